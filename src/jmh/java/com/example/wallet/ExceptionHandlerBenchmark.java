@@ -0,0 +1,72 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.controller.OperationResponses;
+import com.example.wallet.controller.WalletController;
+import com.example.wallet.exception.GlobalExceptionHandler;
+import com.example.wallet.exception.WalletNotFoundException;
+import com.example.wallet.service.OperationResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение тела ошибки в GlobalExceptionHandler: 404 и ошибка валидации.
+ * Исключения создаются заранее, измеряется только обработчик.
+ * <p>
+ * insufficientFundsThrown и insufficientFundsResult — путь отказа WITHDRAW до и после перехода
+ * на {@link OperationResult}: раньше на каждый отказ создавалось исключение со стеком и тело-HashMap,
+ * теперь возвращается общий заранее собранный ответ. Аллокации видны в -prof gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExceptionHandlerBenchmark {
+    private GlobalExceptionHandler handler;
+    private WalletNotFoundException notFound;
+    private MethodArgumentNotValidException invalid;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handler = new GlobalExceptionHandler();
+        notFound = new WalletNotFoundException("Wallet with id " + UUID.randomUUID() + " not found");
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(new WalletOperationRequestDTO(), "dto");
+        bindingResult.addError(new FieldError("dto", "amount", "must not be null"));
+        MethodParameter parameter = new MethodParameter(WalletController.class.getMethod(
+                "updateBalance", UUID.class, WalletOperationRequestDTO.class, String.class), 1);
+        invalid = new MethodArgumentNotValidException(parameter, bindingResult);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> walletNotFound() {
+        return handler.handleWalletNotFound(notFound);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> validationError() {
+        return handler.handleValidation(invalid);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> insufficientFundsThrown() {
+        try {
+            throw new RuntimeException("Insufficient funds");
+        } catch (RuntimeException ex) {
+            return handler.handleRuntime(ex);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> insufficientFundsResult() {
+        return OperationResponses.toResponse(OperationResult.insufficientFunds());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson: разбор тела PATCH (WalletOperationRequestDTO) и запись ответа (WalletResponseDTO)
+ * с ObjectMapper в той же конфигурации, что строит Spring Boot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+    private static final byte[] REQUEST = "{\"operationType\":\"WITHDRAW\",\"amount\":125.50}".getBytes();
+
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private WalletResponseDTO response;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        requestReader = objectMapper.readerFor(WalletOperationRequestDTO.class);
+        responseWriter = objectMapper.writerFor(WalletResponseDTO.class);
+        response = new WalletResponseDTO(UUID.randomUUID(), "jmh", Money.ofMinor(123_456));
+    }
+
+    @Benchmark
+    public WalletOperationRequestDTO readRequest() throws IOException {
+        return requestReader.readValue(REQUEST);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        return responseWriter.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг сущности Wallet в WalletResponseDTO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        wallet = new Wallet(UUID.randomUUID(), Money.ofMinor(123_456));
+        wallet.setOwner("jmh");
+    }
+
+    @Benchmark
+    public WalletResponseDTO toResponse() {
+        return WalletResponseDTO.from(wallet);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WalletService целиком (движок jpa, Hibernate, H2 в памяти): операция с балансом и чтение
+ * с кэшем и без него.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletServiceBenchmark {
+    private static final int WALLETS = 1000;
+
+    @Param({"true", "false"})
+    private boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] wallets;
+    private WalletOperationRequestDTO deposit;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--wallet.cache.enabled=" + cacheEnabled,
+                        "--logging.level.root=WARN",
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        walletService = context.getBean(WalletService.class);
+        wallets = new UUID[WALLETS];
+        for (int i = 0; i < WALLETS; i++) {
+            wallets[i] = walletService.createWallet(new WalletRequestDTO("jmh-" + i)).id();
+        }
+        deposit = new WalletOperationRequestDTO();
+        deposit.setOperationType(OperationType.DEPOSIT);
+        deposit.setAmount(Money.of(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OperationResult<WalletResponseDTO> changeBalance() {
+        return walletService.changeBalance(randomWallet(), deposit);
+    }
+
+    @Benchmark
+    public OperationResult<WalletResponseDTO> getWalletById() {
+        return walletService.getWalletById(randomWallet());
+    }
+
+    private UUID randomWallet() {
+        return wallets[ThreadLocalRandom.current().nextInt(WALLETS)];
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+
+import java.util.UUID;
+
+public record BatchItemResultDTO(UUID walletId, BatchItemStatus status, Money balance) {
+}
@@ -0,0 +1,9 @@
+package com.example.wallet.DTO;
+
+public enum BatchItemStatus {
+    APPLIED,
+    INSUFFICIENT_FUNDS,
+    NOT_FOUND,
+    // операция корректна, но пачка откатилась из-за другой операции
+    ROLLED_BACK
+}
@@ -0,0 +1,12 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.UUID;
+
+public record BatchOperationItemDTO(@NotNull UUID walletId,
+                                    @NotNull OperationType operationType,
+                                    @NotNull @PositiveAmount(allowZero = true) Money amount) {
+}
@@ -0,0 +1,14 @@
+package com.example.wallet.DTO;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * atomic = true — всё или ничего: при первой же неудачной операции пачка откатывается.
+ * atomic = false — каждая операция применяется независимо.
+ */
+public record BatchOperationRequestDTO(boolean atomic,
+                                       @NotEmpty List<@Valid BatchOperationItemDTO> operations) {
+}
@@ -0,0 +1,9 @@
+package com.example.wallet.DTO;
+
+import java.util.List;
+
+/**
+ * Результаты в порядке операций запроса.
+ */
+public record BatchOperationResponseDTO(boolean committed, List<BatchItemResultDTO> results) {
+}
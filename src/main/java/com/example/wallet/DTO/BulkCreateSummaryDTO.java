@@ -0,0 +1,8 @@
+package com.example.wallet.DTO;
+
+/**
+ * Итоговая строка ответа POST /api/wallets/bulk. error не null, если обработка остановилась
+ * на некорректной строке входа; created кошельков при этом уже сохранены.
+ */
+public record BulkCreateSummaryDTO(long created, long rowsPerSecond, String error) {
+}
@@ -0,0 +1,42 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Сумма {@link Money} больше нуля (или не меньше нуля при allowZero). null считается допустимым.
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = PositiveAmount.Validator.class)
+public @interface PositiveAmount {
+    boolean allowZero() default false;
+
+    String message() default "must be greater than ${allowZero == true ? 'or equal to ' : ''}0";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    class Validator implements ConstraintValidator<PositiveAmount, Money> {
+        private boolean allowZero;
+
+        @Override
+        public void initialize(PositiveAmount annotation) {
+            this.allowZero = annotation.allowZero();
+        }
+
+        @Override
+        public boolean isValid(Money value, ConstraintValidatorContext context) {
+            return value == null || value.signum() > 0 || (allowZero && value.signum() == 0);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.UUID;
+
+public record TransferRequestDTO(@NotNull UUID fromWalletId,
+                                 @NotNull UUID toWalletId,
+                                 @NotNull @PositiveAmount Money amount) {
+}
@@ -0,0 +1,4 @@
+package com.example.wallet.DTO;
+
+public record TransferResponseDTO(WalletResponseDTO from, WalletResponseDTO to) {
+}
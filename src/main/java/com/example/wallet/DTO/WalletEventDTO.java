@@ -0,0 +1,20 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OutboxEvent;
+import com.example.wallet.model.OutboxEventType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Событие, уходящее из outbox. Доставка at-least-once: получатель отбрасывает повторы по eventId,
+ * устаревшие состояния кошелька — по seq.
+ */
+public record WalletEventDTO(long eventId, UUID walletId, OutboxEventType type, Money balance, Long seq,
+                             LocalDateTime createdAt) {
+    public static WalletEventDTO from(OutboxEvent event) {
+        return new WalletEventDTO(event.getId(), event.getWalletId(), event.getEventType(), event.getBalance(),
+                event.getSeq(), event.getCreatedAt());
+    }
+}
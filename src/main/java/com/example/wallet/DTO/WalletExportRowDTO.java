@@ -0,0 +1,17 @@
+package com.example.wallet.DTO;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Wallet;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка выгрузки для сверки: balance учитывает журнал до snapshotSeq включительно.
+ */
+public record WalletExportRowDTO(UUID id, String owner, Money balance, long snapshotSeq, LocalDateTime updatedAt) {
+    public static WalletExportRowDTO from(Wallet wallet) {
+        return new WalletExportRowDTO(wallet.getId(), wallet.getOwner(), wallet.getBalance(),
+                wallet.getSnapshotSeq(), wallet.getUpdatedAt());
+    }
+}
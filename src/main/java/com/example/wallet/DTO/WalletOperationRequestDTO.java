@@ -1,20 +1,27 @@
 package com.example.wallet.DTO;
 
+import com.example.wallet.model.Money;
 import com.example.wallet.model.OperationType;
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Для HOLD, CAPTURE и RELEASE обязателен holdId. У HOLD ttlSeconds необязателен (иначе wallet.holds.default-ttl-seconds),
+ * у CAPTURE amount = 0 — списать весь холд, у RELEASE amount не используется.
+ */
 @Getter
 @Setter
 public class WalletOperationRequestDTO {
     @NotNull
     private OperationType operationType;
     @NotNull
-    @DecimalMin("0.0")
-    private BigDecimal amount;
+    @PositiveAmount(allowZero = true)
+    private Money amount;
+    private UUID holdId;
+    private Long ttlSeconds;
 
     public OperationType getOperationType() {
         return operationType;
@@ -24,11 +31,27 @@ public class WalletOperationRequestDTO {
         this.operationType = operationType;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
+
+    public UUID getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(UUID holdId) {
+        this.holdId = holdId;
+    }
+
+    public Long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
 }
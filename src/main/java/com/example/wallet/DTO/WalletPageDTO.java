@@ -0,0 +1,11 @@
+package com.example.wallet.DTO;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Страница списка кошельков по возрастанию id. nextAfter передаётся в after следующего запроса;
+ * null — страниц больше нет.
+ */
+public record WalletPageDTO(List<WalletResponseDTO> items, UUID nextAfter) {
+}
@@ -1,7 +1,19 @@
 package com.example.wallet.DTO;
 
-import java.math.BigDecimal;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Wallet;
+
 import java.util.UUID;
 
-public record WalletResponseDTO (UUID id, String owner, BigDecimal balance){
+/**
+ * available — доступно к списанию: баланс за вычетом активных холдов.
+ */
+public record WalletResponseDTO (UUID id, String owner, Money balance, Money available){
+    public WalletResponseDTO(UUID id, String owner, Money balance) {
+        this(id, owner, balance, balance);
+    }
+
+    public static WalletResponseDTO from(Wallet wallet) {
+        return new WalletResponseDTO(wallet.getId(), wallet.getOwner(), wallet.getBalance(), wallet.getAvailable());
+    }
 }
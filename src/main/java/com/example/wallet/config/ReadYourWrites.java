@@ -0,0 +1,60 @@
+package com.example.wallet.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes для реплик: клиент (заголовок X-Client-Id), недавно выполнивший запрос на запись,
+ * в течение окна читает с primary. Признак закрепления — ThreadLocal на время обработки запроса,
+ * его ставит {@link ReadYourWritesFilter}.
+ */
+public class ReadYourWrites {
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(long windowMs, long maximumClients) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(windowMs))
+                .maximumSize(maximumClients)
+                .build();
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+
+    /**
+     * Выполняет чтение на primary независимо от окна: для проверок, которым нельзя видеть отставшую реплику.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (isPinnedToPrimary()) {
+            return action.get();
+        }
+        pin();
+        try {
+            return action.get();
+        } finally {
+            unpin();
+        }
+    }
+
+    void recordWrite(String clientId) {
+        recentWriters.put(clientId, Boolean.TRUE);
+    }
+
+    boolean wroteRecently(String clientId) {
+        return recentWriters.getIfPresent(clientId) != null;
+    }
+
+    static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    static void unpin() {
+        PINNED.remove();
+    }
+}
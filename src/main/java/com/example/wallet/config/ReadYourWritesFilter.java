@@ -0,0 +1,52 @@
+package com.example.wallet.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Запросы кроме GET/HEAD считаются записью и открывают окно read-your-writes для клиента;
+ * чтения клиента внутри окна закрепляются за primary. Без X-Client-Id запрос не закрепляется.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        if (clientId == null || clientId.isBlank()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String method = request.getMethod();
+        boolean write = !"GET".equals(method) && !"HEAD".equals(method);
+        if (write) {
+            readYourWrites.recordWrite(clientId);
+        }
+        if (!write && !readYourWrites.wroteRecently(clientId)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadYourWrites.pin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.unpin();
+            if (write) {
+                // окно отсчитывается от завершения записи, а не от её начала
+                readYourWrites.recordWrite(clientId);
+            }
+        }
+    }
+}
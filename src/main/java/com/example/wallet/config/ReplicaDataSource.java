@@ -0,0 +1,126 @@
+package com.example.wallet.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений для read-only транзакций: реплики по кругу, только исправные.
+ * Реплика исправна, если проверочный запрос отвечает и возвращает отставание (в секундах)
+ * не больше max-lag. Если исправных реплик нет, реплика не выдала соединение или запрос
+ * закреплён за primary ({@link ReadYourWrites}), соединение берётся с primary.
+ */
+public class ReplicaDataSource extends AbstractDataSource {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<DataSource> replicas, String lagQuery, double maxLagSeconds,
+                             MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+        this.replicas = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica(String.valueOf(i), replicas.get(i));
+            Gauge.builder("wallet.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+            Gauge.builder("wallet.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            this.replicas.add(replica);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (!ReadYourWrites.isPinnedToPrimary()) {
+            int size = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    return source.open(replica.dataSource);
+                } catch (SQLFeatureNotSupportedException ex) {
+                    // пул не поддерживает чужие учётные данные — реплика при этом исправна
+                    throw ex;
+                } catch (SQLException ex) {
+                    replica.healthy = false;
+                    log.warn("Replica {} unavailable, marking unhealthy", replica.name, ex);
+                }
+            }
+        }
+        return source.open(primary);
+    }
+
+    /**
+     * Проверка всех реплик; вызывается по расписанию.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                rs.next();
+                double lag = rs.getDouble(1);
+                replica.lagSeconds = lag;
+                healthy = lag <= maxLagSeconds;
+            } catch (SQLException | RuntimeException ex) {
+                healthy = false;
+                log.debug("Replica {} health check failed", replica.name, ex);
+            }
+            if (healthy != replica.healthy) {
+                log.warn("Replica {} is now {} (lag {} s)", replica.name, healthy ? "healthy" : "unhealthy", replica.lagSeconds);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
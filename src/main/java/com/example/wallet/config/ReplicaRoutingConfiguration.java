@@ -0,0 +1,104 @@
+package com.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маршрутизация на реплики (wallet.datasource.replicas.enabled=true). Primary настраивается как обычно
+ * через spring.datasource.*, реплики — списком URL с общими учётными данными.
+ * <p>
+ * Основной DataSource — LazyConnectionDataSourceProxy: физическое соединение берётся при первом запросе,
+ * когда флаг readOnly транзакции уже известен. Транзакции @Transactional(readOnly = true), в том числе
+ * методы чтения Spring Data репозиториев вне внешней транзакции, идут в {@link ReplicaDataSource},
+ * остальные — на primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "wallet.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService replicaHealthChecker() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                               DataSourceProperties properties,
+                                               MeterRegistry meterRegistry,
+                                               ScheduledExecutorService replicaHealthChecker,
+                                               @Value("${wallet.datasource.replicas.urls}") String[] urls,
+                                               @Value("${wallet.datasource.replicas.username:${spring.datasource.username:}}") String username,
+                                               @Value("${wallet.datasource.replicas.password:${spring.datasource.password:}}") String password,
+                                               @Value("${wallet.datasource.replicas.maximum-pool-size:20}") int maximumPoolSize,
+                                               @Value("${wallet.datasource.replicas.lag-query:select 0}") String lagQuery,
+                                               @Value("${wallet.datasource.replicas.max-lag-seconds:5}") double maxLagSeconds,
+                                               @Value("${wallet.datasource.replicas.check-interval-ms:1000}") long checkIntervalMs) {
+        List<DataSource> replicas = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls[i].trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            if (properties.getDriverClassName() != null) {
+                replica.setDriverClassName(properties.getDriverClassName());
+            }
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        ReplicaDataSource dataSource = new ReplicaDataSource(primaryDataSource, replicas, lagQuery, maxLagSeconds, meterRegistry);
+        dataSource.checkReplicas();
+        replicaHealthChecker.scheduleWithFixedDelay(dataSource::checkReplicas, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+        proxy.setReadOnlyDataSource(replicaDataSource);
+        return proxy;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${wallet.datasource.read-your-writes-ms:2000}") long windowMs,
+                                         @Value("${wallet.datasource.read-your-writes-max-clients:100000}") long maximumClients) {
+        return new ReadYourWrites(windowMs, maximumClients);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadYourWrites readYourWrites) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWrites));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.wallet.config;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Миграции Liquibase на каждом шарде по очереди. Один бин SpringLiquibase: Spring Boot не запускает
+ * свою миграцию и стартует JPA только после этого бина.
+ */
+public class ShardedLiquibase extends SpringLiquibase {
+    private final List<DataSource> shards;
+
+    public ShardedLiquibase(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        for (DataSource shard : shards) {
+            setDataSource(shard);
+            super.afterPropertiesSet();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Шардирование хранилища кошельков (wallet.datasource.shards.enabled=true): N баз из списка URL
+ * с общими учётными данными, кошелёк — в шарде {@link WalletShards#shardOf}. Каждая база мигрируется
+ * своим прогоном Liquibase. Без шардирования {@link WalletShards} содержит один шард и ничего не меняет.
+ * <p>
+ * Поддерживаются движки jpa и group-commit: sharded и ledger пишут несколько кошельков одной фоновой
+ * транзакцией. Реплики (wallet.datasource.replicas.enabled) вместе с шардами не поддерживаются.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ShardingConfiguration {
+    private static final Set<String> SUPPORTED_ENGINES = Set.of("jpa", "group-commit");
+
+    @Bean(destroyMethod = "shutdown")
+    public WalletShards walletShards(@Value("${wallet.datasource.shards.enabled:false}") boolean enabled,
+                                     @Value("${wallet.datasource.shards.urls:}") String[] urls) {
+        return new WalletShards(enabled ? urls.length : 1);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "wallet.datasource.shards.enabled", havingValue = "true")
+    static class ShardRouting {
+
+        @Bean
+        public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                             @Value("${wallet.datasource.shards.urls}") String[] urls,
+                                                             @Value("${wallet.datasource.shards.username:${spring.datasource.username:}}") String username,
+                                                             @Value("${wallet.datasource.shards.password:${spring.datasource.password:}}") String password,
+                                                             @Value("${wallet.datasource.shards.maximum-pool-size:20}") int maximumPoolSize,
+                                                             @Value("${wallet.engine.mode:jpa}") String engineMode,
+                                                             @Value("${wallet.datasource.replicas.enabled:false}") boolean replicasEnabled) {
+            if (!SUPPORTED_ENGINES.contains(engineMode)) {
+                throw new IllegalStateException("wallet.engine.mode=" + engineMode + " does not support sharded storage");
+            }
+            if (replicasEnabled) {
+                throw new IllegalStateException("Replicas are not supported together with sharded storage");
+            }
+            List<DataSource> shards = new ArrayList<>(urls.length);
+            for (int i = 0; i < urls.length; i++) {
+                HikariDataSource shard = new HikariDataSource();
+                shard.setPoolName("shard-" + i);
+                shard.setJdbcUrl(urls[i].trim());
+                shard.setUsername(username);
+                shard.setPassword(password);
+                if (properties.getDriverClassName() != null) {
+                    shard.setDriverClassName(properties.getDriverClassName());
+                }
+                shard.setMaximumPoolSize(maximumPoolSize);
+                shards.add(shard);
+            }
+            return new ShardRoutingDataSource(shards);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+        }
+
+        @Bean
+        public ShardedLiquibase liquibase(ShardRoutingDataSource shardRoutingDataSource,
+                                          @Value("${spring.liquibase.change-log:classpath:db/changelog/db.changelog-master.xml}") String changeLog,
+                                          @Value("${spring.liquibase.enabled:true}") boolean enabled) {
+            ShardedLiquibase liquibase = new ShardedLiquibase(shardRoutingDataSource.shards());
+            liquibase.setChangeLog(changeLog);
+            liquibase.setShouldRun(enabled);
+            return liquibase;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.wallet.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Шарды хранилища кошельков: кошелёк живёт в шарде hash(id) mod count. Выбранный шард — ThreadLocal
+ * на время действия, по нему {@link ShardRoutingDataSource} отдаёт соединение; транзакция должна
+ * начаться внутри {@link #on}, тогда все её запросы идут в один шард.
+ * <p>
+ * При одном шарде (шардирование выключено) действия выполняются как есть.
+ * Число шардов нельзя менять без переноса данных: кошельки сменят шард.
+ */
+public class WalletShards {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final ExecutorService fanOut;
+
+    public WalletShards(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.count = count;
+        this.fanOut = count > 1 ? Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "wallet-shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(UUID walletId) {
+        // младшие 62 бита UUID v4 и v7 случайны
+        return (int) Long.remainderUnsigned(walletId.getLeastSignificantBits(), count);
+    }
+
+    /**
+     * Текущий шард потока или null, если шард не выбран (тогда запросы идут в шард 0).
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public <T> T on(UUID walletId, Supplier<T> action) {
+        return onShard(shardOf(walletId), action);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (count == 1) {
+            return action.get();
+        }
+        Integer current = CURRENT.get();
+        if (current != null) {
+            if (current != shard) {
+                throw new IllegalArgumentException("Operation spans shards " + current + " and " + shard);
+            }
+            return action.get();
+        }
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Выполняет действие на каждом шарде параллельно; результаты — в порядке номеров шардов.
+     */
+    public <T> List<T> onEachShard(Supplier<T> action) {
+        if (count == 1) {
+            return Collections.singletonList(action.get());
+        }
+        List<Future<T>> futures = submitOnEachShard(action);
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", ex);
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard query failed", ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Запускает действие на каждом шарде в отдельном потоке, не дожидаясь результатов. Только при count > 1.
+     */
+    public <T> List<Future<T>> submitOnEachShard(Supplier<T> action) {
+        if (fanOut == null) {
+            throw new IllegalStateException("Sharding is disabled");
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(fanOut.submit(() -> onShard(target, action)));
+        }
+        return futures;
+    }
+
+    public void shutdown() {
+        if (fanOut != null) {
+            fanOut.shutdownNow();
+        }
+    }
+}
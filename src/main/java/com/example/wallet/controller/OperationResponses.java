@@ -0,0 +1,42 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.service.OperationResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Отображение {@link OperationResult} в HTTP-ответ. Ответы на отказы собраны один раз,
+ * вместе с готовым JSON-телом: на отказе не создаются ни исключение, ни Map, ни временная метка.
+ */
+public final class OperationResponses {
+    public static final ResponseEntity<byte[]> INSUFFICIENT_FUNDS = rejection(HttpStatus.CONFLICT, "Insufficient funds");
+    public static final ResponseEntity<byte[]> NOT_FOUND = rejection(HttpStatus.NOT_FOUND, "Wallet not found");
+
+    private OperationResponses() {
+    }
+
+    public static <T> ResponseEntity<?> toResponse(OperationResult<T> result, Function<T, ResponseEntity<?>> success) {
+        return switch (result.status()) {
+            case SUCCESS -> success.apply(result.value());
+            case INSUFFICIENT_FUNDS -> INSUFFICIENT_FUNDS;
+            case NOT_FOUND -> NOT_FOUND;
+        };
+    }
+
+    public static <T> ResponseEntity<?> toResponse(OperationResult<T> result) {
+        return toResponse(result, ResponseEntity::ok);
+    }
+
+    private static ResponseEntity<byte[]> rejection(HttpStatus status, String message) {
+        String body = "{\"status\":" + status.value()
+                + ",\"error\":\"" + status.getReasonPhrase()
+                + "\",\"message\":\"" + message + "\"}";
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,29 +1,60 @@
 package com.example.wallet.controller;
 
+import com.example.wallet.DTO.BatchOperationRequestDTO;
+import com.example.wallet.DTO.BatchOperationResponseDTO;
+import com.example.wallet.DTO.TransferRequestDTO;
 import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletPageDTO;
 import com.example.wallet.DTO.WalletRequestDTO;
 import com.example.wallet.DTO.WalletResponseDTO;
 import com.example.wallet.DTO.WalletUpdateRequestDTO;
 import com.example.wallet.model.*;
+import com.example.wallet.service.BatchOperationService;
+import com.example.wallet.service.IdempotencyService;
+import com.example.wallet.service.WalletAdmission;
+import com.example.wallet.service.WalletBulkService;
+import com.example.wallet.service.WalletExportService;
 import com.example.wallet.service.WalletService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/wallets")
 public class WalletController {
     private static final Logger log = LoggerFactory.getLogger(WalletController.class);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
+    private final BatchOperationService batchOperationService;
+    private final WalletExportService walletExportService;
+    private final WalletBulkService walletBulkService;
+    private final WalletAdmission walletAdmission;
 
-    public WalletController(WalletService walletService) {
+    public WalletController(WalletService walletService, IdempotencyService idempotencyService,
+                            BatchOperationService batchOperationService, WalletExportService walletExportService,
+                            WalletBulkService walletBulkService, WalletAdmission walletAdmission) {
         this.walletService = walletService;
+        this.idempotencyService = idempotencyService;
+        this.batchOperationService = batchOperationService;
+        this.walletExportService = walletExportService;
+        this.walletBulkService = walletBulkService;
+        this.walletAdmission = walletAdmission;
     }
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -37,21 +68,92 @@ public class WalletController {
     }
 
 
+    @GetMapping
+    public WalletPageDTO listWallets(@RequestParam(required = false) String owner,
+                                     @RequestParam(required = false) UUID after,
+                                     @RequestParam(defaultValue = "100") int limit) {
+        return walletService.listWallets(owner, after, limit);
+    }
+
+    /**
+     * NDJSON-выгрузка для сверки; updatedFrom/updatedTo (ISO, [from, to)) — инкрементальная выгрузка.
+     * Тело пишется в ответ по мере чтения курсора, при gzip=true — сжатым потоком.
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportWallets(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedTo,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        walletExportService.checkFilter(updatedFrom, updatedTo);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON));
+        if (!gzip) {
+            return response.body(out -> walletExportService.export(updatedFrom, updatedTo, out));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(out -> {
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            walletExportService.export(updatedFrom, updatedTo, compressed);
+            compressed.finish();
+        });
+    }
+
+    /**
+     * Массовое создание: тело — CSV (владелец в первой колонке, заголовок owner необязателен)
+     * или NDJSON {"owner": ...}. В ответ по мере сохранения пачек идут {"id": ...} и итоговая строка.
+     */
+    @PostMapping(value = "/bulk", consumes = {CSV, NDJSON}, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> bulkCreate(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                            InputStream body) {
+        WalletBulkService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(CSV))
+                ? WalletBulkService.Format.CSV
+                : WalletBulkService.Format.NDJSON;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> walletBulkService.create(body, format, out));
+    }
+
+    /**
+     * Ответ — DTO, как у остальных методов: у сущности наружу ушли бы служебные поля (new, snapshotSeq, held).
+     */
     @PutMapping("/{id}/balance")
-    public ResponseEntity<Wallet> updateBalance(@PathVariable UUID id, @RequestParam BigDecimal balance) {
-        return ResponseEntity.ok(walletService.updateBalance(id, balance));
+    public ResponseEntity<WalletResponseDTO> updateBalance(@PathVariable UUID id, @RequestParam Money balance) {
+        return ResponseEntity.ok(WalletResponseDTO.from(walletService.updateBalance(id, balance)));
     }
+    /**
+     * Сверх лимитов {@link WalletAdmission} — 429 с Retry-After, до обращения к БД.
+     */
     @PatchMapping("/{id}")
-    public WalletResponseDTO updateBalance(
+    public ResponseEntity<?> updateBalance(
             @PathVariable UUID id,
-            @Valid @RequestBody WalletOperationRequestDTO dto
+            @Valid @RequestBody WalletOperationRequestDTO dto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     ) {
-        return walletService.changeBalance(id, dto);
+        if (idempotencyKey == null) {
+            return OperationResponses.toResponse(walletAdmission.admit(id, () -> walletService.changeBalance(id, dto)));
+        }
+        return OperationResponses.toResponse(walletAdmission.admit(id,
+                () -> idempotencyService.execute(id, idempotencyKey, () -> walletService.changeBalance(id, dto))));
+    }
+    @PostMapping("/operations:batch")
+    public ResponseEntity<BatchOperationResponseDTO> applyBatch(@Valid @RequestBody BatchOperationRequestDTO dto) {
+        BatchOperationResponseDTO result = batchOperationService.apply(dto);
+        return ResponseEntity.status(result.committed() ? HttpStatus.OK : HttpStatus.CONFLICT).body(result);
+    }
+    @PostMapping("/transfers")
+    public ResponseEntity<?> transfer(@Valid @RequestBody TransferRequestDTO dto) {
+        return OperationResponses.toResponse(walletService.transfer(dto));
     }
     @GetMapping("/{id}")
-    public ResponseEntity<WalletResponseDTO> getWalletById(@PathVariable UUID id) {
-        WalletResponseDTO wallet = walletService.getWalletById(id);
-        return ResponseEntity.ok(wallet);
+    public ResponseEntity<?> getWalletById(@PathVariable UUID id) {
+        return OperationResponses.toResponse(walletService.getWalletById(id));
+    }
+
+    /**
+     * SSE: событие wallet с WalletResponseDTO сразу и после каждого изменения; поток закрывается при удалении кошелька.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> walletEvents(@PathVariable UUID id, HttpServletRequest request, HttpServletResponse response) {
+        // при успехе ответ пишет подписка асинхронно, тело здесь не возвращается
+        return OperationResponses.toResponse(walletService.subscribe(id, request, response), ignored -> null);
     }
     @PutMapping("/{id}")
     public ResponseEntity<WalletResponseDTO> updateWallet(
@@ -62,8 +164,8 @@ public class WalletController {
         return ResponseEntity.ok(updatedWallet);
     }
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteWallet(@PathVariable UUID id) {
-        walletService.deleteWallet(id);
-        return ResponseEntity.noContent().build(); // HTTP 204
+    public ResponseEntity<?> deleteWallet(@PathVariable UUID id) {
+        return OperationResponses.toResponse(walletService.deleteWallet(id),
+                deleted -> ResponseEntity.noContent().build()); // HTTP 204
     }
 }
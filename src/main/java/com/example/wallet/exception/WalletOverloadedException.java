@@ -0,0 +1,15 @@
+package com.example.wallet.exception;
+
+public class WalletOverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public WalletOverloadedException(String message, long retryAfterSeconds) {
+        // отказ — штатный быстрый путь под нагрузкой, стек не нужен
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.wallet.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Сохранённый ответ на запрос с заголовком Idempotency-Key.
+ * response == null — запрос захвачен и ещё выполняется; такая запись живёт только до expiresAt
+ * короткой аренды и после неё считается брошенной (экземпляр упал между захватом и ответом).
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord implements Persistable<String> {
+    @Id
+    @Column(name = "idempotency_key", length = 300)
+    private String key;
+    @Column(nullable = false, updatable = false)
+    private UUID walletId;
+    @Column(length = 1024)
+    private String response;
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    @Transient
+    private boolean isNew;
+
+    protected IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, UUID walletId, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.key = key;
+        this.walletId = walletId;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.isNew = true;
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+}
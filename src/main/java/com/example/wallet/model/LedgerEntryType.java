@@ -0,0 +1,24 @@
+package com.example.wallet.model;
+
+/**
+ * Тип записи в журнале операций. ADJUSTMENT — прямая установка баланса (PUT /balance),
+ * хранится как разница между новым и старым балансом. TRANSFER_OUT/TRANSFER_IN — две стороны перевода.
+ * CAPTURE — списание зарезервированной холдом суммы; сами HOLD и RELEASE баланс не меняют и в журнал не пишутся.
+ */
+public enum LedgerEntryType {
+    DEPOSIT,
+    WITHDRAW,
+    ADJUSTMENT,
+    TRANSFER_OUT,
+    TRANSFER_IN,
+    CAPTURE;
+
+    public static LedgerEntryType of(OperationType operationType) {
+        return switch (operationType) {
+            case DEPOSIT -> DEPOSIT;
+            case WITHDRAW -> WITHDRAW;
+            case CAPTURE -> CAPTURE;
+            case HOLD, RELEASE -> throw new IllegalArgumentException(operationType + " does not change the balance");
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.wallet.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Денежная сумма в минимальных единицах (сотых), хранится как long.
+ * Сложение и вычитание проверяют переполнение. В десятичный вид сумма переводится
+ * только на границе JSON; на входе допускается не больше двух знаков после точки.
+ */
+@JsonSerialize(using = Money.JsonWriter.class)
+@JsonDeserialize(using = Money.JsonReader.class)
+public record Money(long minorUnits) implements Comparable<Money> {
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+    private static final long FACTOR = 100;
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Сумма в целых единицах: Money.of(5) — это 5.00.
+     */
+    public static Money of(long units) {
+        try {
+            return ofMinor(Math.multiplyExact(units, FACTOR));
+        } catch (ArithmeticException ex) {
+            throw overflow();
+        }
+    }
+
+    /**
+     * Строгий разбор десятичной записи: [-]цифры[.одна или две цифры], без экспоненты.
+     */
+    public static Money valueOf(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        int unitsStart = i;
+        long units = 0;
+        try {
+            for (; i < length && isDigit(text.charAt(i)); i++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), text.charAt(i) - '0');
+            }
+            if (i == unitsStart) {
+                throw new IllegalArgumentException("Invalid amount: " + text);
+            }
+            long fraction = 0;
+            if (i < length && text.charAt(i) == '.') {
+                int fractionStart = ++i;
+                for (; i < length && isDigit(text.charAt(i)); i++) {
+                    fraction = fraction * 10 + (text.charAt(i) - '0');
+                    if (i - fractionStart >= SCALE) {
+                        throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places: " + text);
+                    }
+                }
+                if (i == fractionStart) {
+                    throw new IllegalArgumentException("Invalid amount: " + text);
+                }
+                if (i - fractionStart == 1) {
+                    fraction *= 10;
+                }
+            }
+            if (i != length) {
+                throw new IllegalArgumentException("Invalid amount: " + text);
+            }
+            long minor = Math.addExact(Math.multiplyExact(units, FACTOR), fraction);
+            return ofMinor(negative ? -minor : minor);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount out of range: " + text);
+        }
+    }
+
+    public Money plus(Money other) {
+        try {
+            return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException ex) {
+            throw overflow();
+        }
+    }
+
+    public Money minus(Money other) {
+        try {
+            return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException ex) {
+            throw overflow();
+        }
+    }
+
+    public Money negate() {
+        try {
+            return ofMinor(Math.negateExact(minorUnits));
+        } catch (ArithmeticException ex) {
+            throw overflow();
+        }
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        long units = Math.abs(minorUnits / FACTOR);
+        long fraction = Math.abs(minorUnits % FACTOR);
+        StringBuilder text = new StringBuilder(24);
+        if (minorUnits < 0) {
+            text.append('-');
+        }
+        text.append(units).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static ArithmeticException overflow() {
+        return new ArithmeticException("Money overflow");
+    }
+
+    public static final class JsonWriter extends StdSerializer<Money> {
+        public JsonWriter() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    public static final class JsonReader extends StdDeserializer<Money> {
+        public JsonReader() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+            }
+            String text = p.getText();
+            try {
+                return valueOf(text);
+            } catch (IllegalArgumentException ex) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, text, ex.getMessage());
+            }
+        }
+    }
+}
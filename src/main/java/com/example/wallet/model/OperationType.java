@@ -1,6 +1,17 @@
 package com.example.wallet.model;
 
+/**
+ * HOLD резервирует сумму (доступно = баланс - холды), CAPTURE списывает зарезервированное
+ * (целиком или частично, остаток резерва снимается), RELEASE снимает резерв. См. WalletHold.
+ */
 public enum OperationType {
     DEPOSIT,
-    WITHDRAW
+    WITHDRAW,
+    HOLD,
+    CAPTURE,
+    RELEASE;
+
+    public boolean isHoldOperation() {
+        return this == HOLD || this == CAPTURE || this == RELEASE;
+    }
 }
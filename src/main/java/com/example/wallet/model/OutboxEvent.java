@@ -0,0 +1,75 @@
+package com.example.wallet.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Событие об изменении кошелька, записанное в той же транзакции, что и само изменение.
+ * id выдаётся последовательностью с шагом 1 уже под блокировкой кошелька, поэтому события
+ * одного кошелька упорядочены по id в порядке фиксации транзакций.
+ */
+@Entity
+@Table(name = "wallet_outbox")
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_outbox_seq")
+    @SequenceGenerator(name = "wallet_outbox_seq", sequenceName = "wallet_outbox_seq", allocationSize = 1)
+    private Long id;
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false, length = 16)
+    private OutboxEventType eventType;
+    // в минимальных единицах; null для DELETED
+    @Column(updatable = false)
+    private Long balance;
+    @Column(updatable = false)
+    private Long seq;
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    protected OutboxEvent() {
+    }
+
+    private OutboxEvent(UUID walletId, OutboxEventType eventType, Money balance, Long seq, LocalDateTime createdAt) {
+        this.walletId = walletId;
+        this.eventType = eventType;
+        this.balance = balance != null ? balance.minorUnits() : null;
+        this.seq = seq;
+        this.createdAt = createdAt;
+    }
+
+    public static OutboxEvent balanceChanged(UUID walletId, Money balance, long seq, LocalDateTime now) {
+        return new OutboxEvent(walletId, OutboxEventType.BALANCE_CHANGED, balance, seq, now);
+    }
+
+    public static OutboxEvent deleted(UUID walletId, LocalDateTime now) {
+        return new OutboxEvent(walletId, OutboxEventType.DELETED, null, null, now);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public OutboxEventType getEventType() {
+        return eventType;
+    }
+
+    public Money getBalance() {
+        return balance != null ? Money.ofMinor(balance) : null;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
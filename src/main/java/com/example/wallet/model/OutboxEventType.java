@@ -0,0 +1,9 @@
+package com.example.wallet.model;
+
+/**
+ * Тип события в outbox. BALANCE_CHANGED несёт баланс и seq кошелька после изменения, DELETED — только id.
+ */
+public enum OutboxEventType {
+    BALANCE_CHANGED,
+    DELETED
+}
@@ -0,0 +1,46 @@
+package com.example.wallet.model;
+
+import com.example.wallet.config.WalletShards;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerDescriptor;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence-генератор с отдельным pooled-оптимизатором на каждый шард хранилища. Обычный оптимизатор
+ * один на фабрику сессий: блок id, взятый из последовательности одного шарда, раздавался бы строкам
+ * всех шардов и пересекался с блоками их собственных последовательностей. Без шардирования
+ * работает как {@link SequenceStyleGenerator}.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+    private final ConcurrentHashMap<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+    private OptimizerDescriptor optimizerDescriptor;
+    private int initialValue;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, parameters, serviceRegistry);
+        this.optimizerDescriptor = determineOptimizationStrategy(parameters, getOptimizer().getIncrementSize());
+        this.initialValue = determineInitialValue(parameters);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        Integer shard = WalletShards.current();
+        if (shard == null || shard == 0) {
+            return super.generate(session, object);
+        }
+        // последовательность читается в соединении сессии, то есть в шарде текущей транзакции
+        Optimizer optimizer = shardOptimizers.computeIfAbsent(shard, key -> OptimizerFactory.buildOptimizer(
+                optimizerDescriptor, getIdentifierType().getReturnedClass(), getOptimizer().getIncrementSize(), initialValue));
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
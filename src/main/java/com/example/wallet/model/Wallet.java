@@ -5,8 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.GenericGenerator;
+import org.springframework.data.domain.Persistable;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 @Getter
@@ -14,23 +14,30 @@ import java.util.UUID;
 @AllArgsConstructor
 @Entity
 @Table(name = "wallets")
-public class Wallet {
+public class Wallet implements Persistable<UUID> {
     @Id
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(
             name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator"
+            type = WalletIdGenerator.class
     )
     @Column(updatable = false, nullable = false)
     private UUID id;
+    // в минимальных единицах, см. Money
     @Column(nullable = false)
-    private BigDecimal balance;
+    private long balance;
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     @Column(nullable = false)
     private LocalDateTime updatedAt;
     @Column(nullable = false)
     private String owner;
+    // seq последней записи журнала, учтённой в balance
+    @Column(nullable = false)
+    private long snapshotSeq;
+    // сумма активных холдов (WalletHold), к списанию доступно balance - held
+    @Column(nullable = false)
+    private long held;
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -44,25 +51,43 @@ public class Wallet {
     public Wallet() {
     }
 
-    public Wallet(UUID id, BigDecimal balance) {
+    public Wallet(UUID id, Money balance) {
         this.id = id;
-        this.balance = balance;
+        this.balance = balance.minorUnits();
     }
 
     public UUID getId() {
         return id;
     }
 
+    // id может быть назначен до сохранения (см. WalletService#createWallet), новизну определяет createdAt
+    @Override
+    public boolean isNew() {
+        return createdAt == null;
+    }
+
     public void setId(UUID id) {
         this.id = id;
     }
 
-    public BigDecimal getBalance() {
-        return balance;
+    public Money getBalance() {
+        return Money.ofMinor(balance);
+    }
+
+    public void setBalance(Money balance) {
+        this.balance = balance.minorUnits();
+    }
+
+    public Money getHeld() {
+        return Money.ofMinor(held);
+    }
+
+    public void setHeld(Money held) {
+        this.held = held.minorUnits();
     }
 
-    public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+    public Money getAvailable() {
+        return Money.ofMinor(balance - held);
     }
 
     public LocalDateTime getCreatedAt() {
@@ -88,4 +113,12 @@ public class Wallet {
     public void setOwner(String owner) {
         this.owner = owner;
     }
+
+    public long getSnapshotSeq() {
+        return snapshotSeq;
+    }
+
+    public void setSnapshotSeq(long snapshotSeq) {
+        this.snapshotSeq = snapshotSeq;
+    }
 }
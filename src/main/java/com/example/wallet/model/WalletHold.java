@@ -0,0 +1,67 @@
+package com.example.wallet.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Активный холд: сумма зарезервирована в wallets.held до capture, release или expiresAt.
+ * id задаёт клиент (например, id авторизации карты); строка удаляется, когда холд завершён.
+ */
+@Entity
+@Table(name = "wallet_holds", indexes = @Index(name = "idx_wallet_holds_wallet_id", columnList = "wallet_id"))
+public class WalletHold implements Persistable<UUID> {
+    @Id
+    private UUID id;
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+    // в минимальных единицах, см. Money
+    @Column(nullable = false, updatable = false)
+    private long amount;
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime expiresAt;
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    @Transient
+    private boolean isNew;
+
+    protected WalletHold() {
+    }
+
+    public WalletHold(UUID id, UUID walletId, Money amount, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.id = id;
+        this.walletId = walletId;
+        this.amount = amount.minorUnits();
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.isNew = true;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public Money getAmount() {
+        return Money.ofMinor(amount);
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
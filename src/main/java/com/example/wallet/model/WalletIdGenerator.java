@@ -0,0 +1,41 @@
+package com.example.wallet.model;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Генератор id сущности Wallet. Версия UUID берётся из настройки Hibernate wallet.id.version
+ * (spring.jpa.properties.wallet.id.version), по умолчанию v7. Заранее назначенный id сохраняется как есть.
+ */
+public class WalletIdGenerator implements IdentifierGenerator {
+    public static final String VERSION_SETTING = "wallet.id.version";
+
+    private WalletIds.Version version = WalletIds.Version.V7;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        Object setting = serviceRegistry.requireService(ConfigurationService.class).getSettings().get(VERSION_SETTING);
+        if (setting != null) {
+            version = WalletIds.parseVersion(setting.toString());
+        }
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        if (object instanceof Wallet wallet && wallet.getId() != null) {
+            return wallet.getId();
+        }
+        return WalletIds.next(version);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.wallet.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генерация id кошельков. V4 — случайный UUID (как прежний org.hibernate.id.UUIDGenerator),
+ * V7 — упорядоченный по времени UUID по RFC 9562: 48 бит миллисекунд, 12-битный счётчик
+ * (rand_a) и 62 случайных бита. Новые id попадают в правый край B-дерева первичного ключа,
+ * а не на случайные страницы.
+ * <p>
+ * Счётчик общий на процесс и сдвигается CAS-ом без блокировок: id строго возрастают в пределах
+ * узла, в том числе больше 4096 в одну миллисекунду (тогда метка времени забегает вперёд) и
+ * при откате системных часов. Случайная часть берётся из ThreadLocalRandom и не ждёт энтропии.
+ */
+public final class WalletIds {
+    public enum Version { V4, V7 }
+
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RAND_B_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    // миллисекунды << 12 | счётчик последнего выданного v7
+    private static final AtomicLong lastV7 = new AtomicLong();
+
+    private WalletIds() {
+    }
+
+    public static UUID next(Version version) {
+        return version == Version.V7 ? v7() : UUID.randomUUID();
+    }
+
+    public static UUID v7() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long prev;
+        long next;
+        do {
+            prev = lastV7.get();
+            next = Math.max(now, prev + 1);
+        } while (!lastV7.compareAndSet(prev, next));
+        long msb = (next >>> COUNTER_BITS) << 16 | VERSION_7 | (next & COUNTER_MASK);
+        long lsb = VARIANT | ThreadLocalRandom.current().nextLong() & RAND_B_MASK;
+        return new UUID(msb, lsb);
+    }
+
+    /** "4"/"v4" или "7"/"v7" без учёта регистра. */
+    public static Version parseVersion(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "4", "v4" -> Version.V4;
+            case "7", "v7" -> Version.V7;
+            default -> throw new IllegalArgumentException("Unsupported wallet id version: " + value);
+        };
+    }
+}
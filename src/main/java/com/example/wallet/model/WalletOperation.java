@@ -0,0 +1,76 @@
+package com.example.wallet.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Запись append-only журнала операций. seq — порядковый номер операции внутри кошелька,
+ * delta — изменение баланса со знаком в минимальных единицах, так что баланс = SUM(delta).
+ */
+@Entity
+@Table(name = "wallet_operations",
+        uniqueConstraints = @UniqueConstraint(name = "uq_wallet_operations_wallet_seq", columnNames = {"wallet_id", "seq"}))
+public class WalletOperation {
+    @Id
+    @GeneratedValue(generator = "wallet_operations_seq")
+    @GenericGenerator(name = "wallet_operations_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "wallet_operations_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
+    private Long id;
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+    @Column(nullable = false, updatable = false)
+    private long seq;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false, length = 16)
+    private LedgerEntryType operationType;
+    @Column(nullable = false, updatable = false)
+    private long delta;
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    protected WalletOperation() {
+    }
+
+    public WalletOperation(UUID walletId, long seq, LedgerEntryType operationType, Money delta, LocalDateTime createdAt) {
+        this.walletId = walletId;
+        this.seq = seq;
+        this.operationType = operationType;
+        this.delta = delta.minorUnits();
+        this.createdAt = createdAt;
+    }
+
+    public static WalletOperation of(UUID walletId, long seq, OperationType type, Money amount, LocalDateTime now) {
+        Money delta = type == OperationType.DEPOSIT ? amount : amount.negate();
+        return new WalletOperation(walletId, seq, LedgerEntryType.of(type), delta, now);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public LedgerEntryType getOperationType() {
+        return operationType;
+    }
+
+    public Money getDelta() {
+        return Money.ofMinor(delta);
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
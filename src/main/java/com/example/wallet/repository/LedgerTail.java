@@ -0,0 +1,12 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.Money;
+
+/**
+ * Агрегат по записям журнала после снапшота: сумма изменений и последний seq.
+ */
+public record LedgerTail(Money delta, long lastSeq) {
+    public LedgerTail(long delta, long lastSeq) {
+        this(Money.ofMinor(delta), lastSeq);
+    }
+}
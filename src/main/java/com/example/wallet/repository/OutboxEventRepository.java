@@ -0,0 +1,16 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("select e from OutboxEvent e order by e.id")
+    List<OutboxEvent> findOldest(Pageable page);
+}
@@ -0,0 +1,26 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.WalletHold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WalletHoldRepository extends JpaRepository<WalletHold, UUID> {
+
+    /**
+     * Холды с id строго больше after, по возрастанию id: загрузка в колесо таймеров при старте.
+     */
+    @Query("select h from WalletHold h where h.id > :after order by h.id")
+    List<WalletHold> findPageAfter(@Param("after") UUID after, Pageable page);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from WalletHold h where h.walletId = :walletId")
+    int deleteByWalletId(@Param("walletId") UUID walletId);
+}
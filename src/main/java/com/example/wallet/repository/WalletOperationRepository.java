@@ -0,0 +1,24 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.WalletOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WalletOperationRepository extends JpaRepository<WalletOperation, Long> {
+
+    @Query("select new com.example.wallet.repository.LedgerTail(coalesce(sum(o.delta), 0L), coalesce(max(o.seq), :afterSeq)) " +
+            "from WalletOperation o where o.walletId = :walletId and o.seq > :afterSeq")
+    LedgerTail tail(@Param("walletId") UUID walletId, @Param("afterSeq") long afterSeq);
+
+    @Query("select distinct o.walletId from WalletOperation o, Wallet w " +
+            "where o.walletId = w.id and o.seq > w.snapshotSeq")
+    List<UUID> findWalletsWithTail();
+
+    long countByWalletId(UUID walletId);
+}
@@ -1,13 +1,79 @@
 package com.example.wallet.repository;
 
 import com.example.wallet.model.Wallet;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
-    Optional<Wallet> findByOwner(String owner);
+    List<Wallet> findByOwner(String owner);
+
+    // keyset-пагинация: следующая страница начинается строго после последнего id предыдущей,
+    // поэтому стоимость не зависит от глубины страницы (в отличие от OFFSET)
+
+    @Query("select w from Wallet w where w.id > :after order by w.id")
+    List<Wallet> findPageAfter(@Param("after") UUID after, Pageable page);
+
+    @Query("select w from Wallet w where w.owner = :owner and w.id > :after order by w.id")
+    List<Wallet> findPageByOwnerAfter(@Param("owner") String owner, @Param("after") UUID after, Pageable page);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id = :id")
+    Optional<Wallet> findByIdForUpdate(@Param("id") UUID id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id in :ids order by w.id")
+    List<Wallet> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+
+    // суммы в запросах — минимальные единицы (Money.minorUnits)
+
+    /**
+     * Атомарно увеличивает баланс одним UPDATE и сдвигает snapshotSeq на новую запись журнала.
+     * @return количество изменённых строк: 0 — кошелёк не найден
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Wallet w set w.balance = w.balance + :amount, w.snapshotSeq = w.snapshotSeq + 1, w.updatedAt = :now " +
+            "where w.id = :id")
+    int deposit(@Param("id") UUID id, @Param("amount") long amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Атомарно списывает средства, если их достаточно за вычетом холдов, и сдвигает snapshotSeq.
+     * @return количество изменённых строк: 0 — кошелёк не найден или недостаточно средств
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Wallet w set w.balance = w.balance - :amount, w.snapshotSeq = w.snapshotSeq + 1, w.updatedAt = :now " +
+            "where w.id = :id and w.balance - w.held >= :amount")
+    int withdraw(@Param("id") UUID id, @Param("amount") long amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Записывает баланс, уже учитывающий журнал до seq включительно.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Wallet w set w.balance = :balance, w.snapshotSeq = :seq, w.updatedAt = :now where w.id = :id")
+    int setBalance(@Param("id") UUID id, @Param("balance") long balance, @Param("seq") long seq,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * Переносит хвост журнала в снапшот, если снапшот не успел измениться с момента чтения.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Wallet w set w.balance = w.balance + :delta, w.snapshotSeq = :seq, w.updatedAt = :now " +
+            "where w.id = :id and w.snapshotSeq = :expectedSeq")
+    int advanceSnapshot(@Param("id") UUID id, @Param("delta") long delta, @Param("expectedSeq") long expectedSeq,
+                        @Param("seq") long seq, @Param("now") LocalDateTime now);
+
+    @Query("select w.id from Wallet w where w.id > :after order by w.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Pageable page);
 }
@@ -0,0 +1,52 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Стратегия применения операций DEPOSIT/WITHDRAW.
+ * Реализация выбирается свойством {@code wallet.engine.mode}.
+ */
+public interface BalanceEngine {
+
+    /**
+     * Нехватка средств и отсутствие кошелька возвращаются результатом, исключение — только сбой.
+     */
+    OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto);
+
+    /**
+     * Чтение кошелька; null, если его нет. Движки, которые держат баланс в памяти, отвечают из своего состояния.
+     */
+    default WalletResponseDTO read(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        return loader.apply(id);
+    }
+
+    /**
+     * Выполняет изменение кошелька в обход движка (смена владельца, удаление и т.п.),
+     * предварительно сбросив накопленное состояние этого кошелька в БД. Действие может выполняться
+     * в потоке движка, вне транзакции вызывающего: нужную транзакцию оно открывает само.
+     */
+    default <T> T exclusive(UUID id, Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * true — актуальный баланс всегда лежит в строке wallets, и её можно менять
+     * напрямую под блокировкой (пакетные операции, переводы).
+     */
+    default boolean rowIsAuthoritative() {
+        return true;
+    }
+
+    /**
+     * true — холды (HOLD, CAPTURE, RELEASE) можно применять к строке wallets под блокировкой
+     * внутри {@link #exclusive}: других изменений баланса кошелька движок в это время не делает.
+     */
+    default boolean supportsHolds() {
+        return true;
+    }
+}
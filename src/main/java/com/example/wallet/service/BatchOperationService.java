@@ -0,0 +1,239 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.BatchItemResultDTO;
+import com.example.wallet.DTO.BatchItemStatus;
+import com.example.wallet.DTO.BatchOperationItemDTO;
+import com.example.wallet.DTO.BatchOperationRequestDTO;
+import com.example.wallet.DTO.BatchOperationResponseDTO;
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.OutboxEvent;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Пакетное применение операций (POST /api/wallets/operations:batch).
+ * Все затронутые строки блокируются в порядке {@link WalletLockOrder} — встречные пачки
+ * не могут взаимно заблокироваться. Балансы считаются в памяти, затем Hibernate отправляет
+ * UPDATE кошельков и INSERT журнала JDBC-пачками (hibernate.jdbc.batch_size).
+ * <p>
+ * Если движок держит баланс не в строке wallets (sharded, ledger), операции применяются
+ * по одной через движок, и режим "всё или ничего" недоступен.
+ * <p>
+ * При шардировании хранилища пачка делится по шардам, части применяются параллельно, каждая своей
+ * транзакцией; режим "всё или ничего" доступен, только если все кошельки пачки в одном шарде.
+ */
+@Service
+public class BatchOperationService {
+    private static final int LOCK_CHUNK = 1000;
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final BalanceEngine balanceEngine;
+    private final WalletCache walletCache;
+    private final WalletMetrics walletMetrics;
+    private final WalletOutbox walletOutbox;
+    private final WalletSubscriptions walletSubscriptions;
+    private final WalletShards walletShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSize;
+
+    public BatchOperationService(WalletRepository walletRepository,
+                                 WalletOperationRepository walletOperationRepository,
+                                 BalanceEngine balanceEngine,
+                                 WalletCache walletCache,
+                                 WalletMetrics walletMetrics,
+                                 WalletOutbox walletOutbox,
+                                 WalletSubscriptions walletSubscriptions,
+                                 WalletShards walletShards,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${wallet.batch.max-size:10000}") int maxSize) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.balanceEngine = balanceEngine;
+        this.walletCache = walletCache;
+        this.walletMetrics = walletMetrics;
+        this.walletOutbox = walletOutbox;
+        this.walletSubscriptions = walletSubscriptions;
+        this.walletShards = walletShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+    }
+
+    public BatchOperationResponseDTO apply(BatchOperationRequestDTO request) {
+        List<BatchOperationItemDTO> items = request.operations();
+        if (items.size() > maxSize) {
+            throw new IllegalArgumentException("Batch size " + items.size() + " exceeds limit " + maxSize);
+        }
+        for (BatchOperationItemDTO item : items) {
+            if (item.operationType().isHoldOperation()) {
+                throw new IllegalArgumentException("Holds are not supported in batches");
+            }
+        }
+        if (!balanceEngine.rowIsAuthoritative()) {
+            if (request.atomic()) {
+                throw new IllegalArgumentException("Atomic batches are not supported by the configured balance engine");
+            }
+            return applyOneByOne(items);
+        }
+        if (walletShards.count() > 1) {
+            return applyPerShard(items, request.atomic());
+        }
+        return applyInTransaction(items, request.atomic());
+    }
+
+    private BatchOperationResponseDTO applyPerShard(List<BatchOperationItemDTO> items, boolean atomic) {
+        Map<Integer, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            positions.computeIfAbsent(walletShards.shardOf(items.get(i).walletId()), shard -> new ArrayList<>()).add(i);
+        }
+        if (atomic && positions.size() > 1) {
+            throw new IllegalArgumentException("Atomic batches cannot span several shards");
+        }
+        List<Map.Entry<List<Integer>, BatchOperationResponseDTO>> parts = walletShards.onEachShard(() -> {
+            List<Integer> indexes = positions.get(WalletShards.current());
+            if (indexes == null) {
+                return null;
+            }
+            List<BatchOperationItemDTO> part = new ArrayList<>(indexes.size());
+            indexes.forEach(index -> part.add(items.get(index)));
+            return Map.entry(indexes, applyInTransaction(part, atomic));
+        });
+        BatchItemResultDTO[] results = new BatchItemResultDTO[items.size()];
+        boolean committed = true;
+        for (Map.Entry<List<Integer>, BatchOperationResponseDTO> part : parts) {
+            if (part == null) {
+                continue;
+            }
+            committed &= part.getValue().committed();
+            for (int i = 0; i < part.getKey().size(); i++) {
+                results[part.getKey().get(i)] = part.getValue().results().get(i);
+            }
+        }
+        return new BatchOperationResponseDTO(committed, Arrays.asList(results));
+    }
+
+    private BatchOperationResponseDTO applyInTransaction(List<BatchOperationItemDTO> items, boolean atomic) {
+        BatchOperationResponseDTO response = transactionTemplate.execute(status -> {
+            BatchOperationResponseDTO result = applyLocked(items, atomic);
+            if (!result.committed()) {
+                status.setRollbackOnly();
+            }
+            return result;
+        });
+        if (response.committed()) {
+            items.forEach(item -> {
+                walletCache.invalidateAfterCommit(item.walletId());
+                walletSubscriptions.changedAfterCommit(item.walletId());
+            });
+        }
+        return response;
+    }
+
+    private BatchOperationResponseDTO applyLocked(List<BatchOperationItemDTO> items, boolean atomic) {
+        TreeSet<UUID> ids = new TreeSet<>(WalletLockOrder.COMPARATOR);
+        items.forEach(item -> ids.add(item.walletId()));
+        Map<UUID, Wallet> wallets = new HashMap<>(ids.size() * 2);
+        List<UUID> chunk = new ArrayList<>(LOCK_CHUNK);
+        for (UUID id : ids) {
+            chunk.add(id);
+            if (chunk.size() == LOCK_CHUNK) {
+                lockChunk(chunk, wallets);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            lockChunk(chunk, wallets);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BatchItemResultDTO[] results = new BatchItemResultDTO[items.size()];
+        List<WalletOperation> entries = new ArrayList<>(items.size());
+        boolean failed = false;
+        for (int i = 0; i < items.size(); i++) {
+            BatchOperationItemDTO item = items.get(i);
+            Wallet wallet = wallets.get(item.walletId());
+            if (wallet == null) {
+                results[i] = new BatchItemResultDTO(item.walletId(), BatchItemStatus.NOT_FOUND, null);
+                failed = true;
+                continue;
+            }
+            Money balance = wallet.getBalance();
+            if (item.operationType() == OperationType.DEPOSIT) {
+                balance = balance.plus(item.amount());
+            } else if (!balance.minus(wallet.getHeld()).isLessThan(item.amount())) {
+                balance = balance.minus(item.amount());
+            } else {
+                results[i] = new BatchItemResultDTO(item.walletId(), BatchItemStatus.INSUFFICIENT_FUNDS, wallet.getBalance());
+                failed = true;
+                continue;
+            }
+            wallet.setBalance(balance);
+            wallet.setSnapshotSeq(wallet.getSnapshotSeq() + 1);
+            entries.add(WalletOperation.of(wallet.getId(), wallet.getSnapshotSeq(), item.operationType(), item.amount(), now));
+            results[i] = new BatchItemResultDTO(item.walletId(), BatchItemStatus.APPLIED, balance);
+        }
+
+        if (atomic && failed) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].status() == BatchItemStatus.APPLIED) {
+                    results[i] = new BatchItemResultDTO(results[i].walletId(), BatchItemStatus.ROLLED_BACK, null);
+                }
+            }
+            return new BatchOperationResponseDTO(false, Arrays.asList(results));
+        }
+        walletOperationRepository.saveAll(entries);
+        Map<UUID, OutboxEvent> events = new LinkedHashMap<>();
+        for (WalletOperation entry : entries) {
+            Wallet wallet = wallets.get(entry.getWalletId());
+            events.putIfAbsent(wallet.getId(), OutboxEvent.balanceChanged(wallet.getId(), wallet.getBalance(), wallet.getSnapshotSeq(), now));
+        }
+        walletOutbox.balanceChanged(new ArrayList<>(events.values()));
+        return new BatchOperationResponseDTO(true, Arrays.asList(results));
+    }
+
+    private void lockChunk(List<UUID> chunk, Map<UUID, Wallet> wallets) {
+        walletMetrics.recordLockWait("batch", () -> walletRepository.findAllByIdForUpdate(chunk))
+                .forEach(wallet -> wallets.put(wallet.getId(), wallet));
+    }
+
+    private BatchOperationResponseDTO applyOneByOne(List<BatchOperationItemDTO> items) {
+        List<BatchItemResultDTO> results = new ArrayList<>(items.size());
+        for (BatchOperationItemDTO item : items) {
+            WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+            dto.setOperationType(item.operationType());
+            dto.setAmount(item.amount());
+            OperationResult<WalletResponseDTO> applied = walletShards.on(item.walletId(),
+                    () -> balanceEngine.changeBalance(item.walletId(), dto));
+            switch (applied.status()) {
+                case SUCCESS -> {
+                    walletCache.invalidateAfterCommit(item.walletId());
+                    walletSubscriptions.changedAfterCommit(item.walletId());
+                    results.add(new BatchItemResultDTO(item.walletId(), BatchItemStatus.APPLIED, applied.value().balance()));
+                }
+                case INSUFFICIENT_FUNDS -> results.add(new BatchItemResultDTO(item.walletId(), BatchItemStatus.INSUFFICIENT_FUNDS, null));
+                case NOT_FOUND -> results.add(new BatchItemResultDTO(item.walletId(), BatchItemStatus.NOT_FOUND, null));
+            }
+        }
+        return new BatchOperationResponseDTO(true, results);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletEventDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Публикация в NDJSON-файл для локальной отладки: пачка дописывается в конец и сбрасывается
+ * на диск (force) до подтверждения relay. После сбоя между записью и удалением из outbox
+ * пачка окажется в файле дважды.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.outbox.publisher", havingValue = "file")
+public class FileOutboxPublisher implements OutboxPublisher {
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileOutboxPublisher(ObjectMapper objectMapper,
+                               @Value("${wallet.outbox.file.path:wallet-events.ndjson}") String path) throws IOException {
+        this.objectMapper = objectMapper;
+        Path file = Path.of(path).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void publish(List<WalletEventDTO> events) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(events.size() * 160);
+        for (WalletEventDTO event : events) {
+            objectMapper.writeValue(buffer, event);
+            buffer.write('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit: операции над одним кошельком, пришедшие в пределах окна window-ms
+ * (или до max-batch-size штук), применяются одной транзакцией — одно чтение строки
+ * с блокировкой, операции по порядку поступления, один UPDATE и пачка записей журнала.
+ * Каждый вызывающий получает свой результат, в том числе отказ по недостатку средств.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.mode", havingValue = "group-commit")
+public class GroupCommitBalanceEngine implements BalanceEngine {
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitBalanceEngine.class);
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizes;
+    private final WalletMetrics walletMetrics;
+    private final WalletOutbox walletOutbox;
+    private final WalletShards walletShards;
+    private final long windowMicros;
+    private final int maxBatchSize;
+    private final ConcurrentHashMap<UUID, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService committers;
+
+    public GroupCommitBalanceEngine(WalletRepository walletRepository,
+                                    WalletOperationRepository walletOperationRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    WalletMetrics walletMetrics,
+                                    WalletOutbox walletOutbox,
+                                    WalletShards walletShards,
+                                    @Value("${wallet.engine.group-commit.window-micros:2000}") long windowMicros,
+                                    @Value("${wallet.engine.group-commit.max-batch-size:64}") int maxBatchSize,
+                                    @Value("${wallet.engine.group-commit.committers:4}") int committers) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.walletMetrics = walletMetrics;
+        this.walletOutbox = walletOutbox;
+        this.walletShards = walletShards;
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = DistributionSummary.builder("wallet.group_commit.batch_size")
+                .description("Operations applied per group commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "wallet-group-commit-timer"));
+        this.committers = Executors.newFixedThreadPool(committers, r -> daemon(r, "wallet-group-commit"));
+    }
+
+    @Override
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        PendingOperation operation = new PendingOperation(dto.getOperationType(), dto.getAmount());
+        Batch[] full = new Batch[1];
+        pending.compute(id, (key, batch) -> {
+            if (batch == null) {
+                batch = new Batch(key);
+                Batch scheduled = batch;
+                timer.schedule(() -> expire(scheduled), windowMicros, TimeUnit.MICROSECONDS);
+            }
+            batch.operations.add(operation);
+            if (batch.operations.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            committers.execute(() -> commit(full[0]));
+        }
+        return Futures.await(operation.result);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        pending.values().forEach(batch -> {
+            if (pending.remove(batch.walletId, batch)) {
+                committers.execute(() -> commit(batch));
+            }
+        });
+        committers.shutdown();
+        try {
+            committers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expire(Batch batch) {
+        // пачка могла уже уйти на запись по размеру
+        if (pending.remove(batch.walletId, batch)) {
+            committers.execute(() -> commit(batch));
+        }
+    }
+
+    private void commit(Batch batch) {
+        List<PendingOperation> operations = batch.operations;
+        batchSizes.record(operations.size());
+        List<OperationResult<WalletResponseDTO>> results = new ArrayList<>(operations.size());
+        try {
+            // коммиттер — свой поток, шард кошелька выбирается здесь
+            walletShards.on(batch.walletId, () -> transactionTemplate.execute(status -> {
+                Wallet wallet = walletMetrics.recordLockWait("group-commit", () -> walletRepository.findByIdForUpdate(batch.walletId))
+                        .orElse(null);
+                if (wallet == null) {
+                    operations.forEach(operation -> results.add(OperationResult.notFound()));
+                    return null;
+                }
+                Money balance = wallet.getBalance();
+                Money held = wallet.getHeld();
+                long seq = wallet.getSnapshotSeq();
+                LocalDateTime now = LocalDateTime.now();
+                List<WalletOperation> entries = new ArrayList<>(operations.size());
+                for (PendingOperation operation : operations) {
+                    if (operation.type == OperationType.DEPOSIT) {
+                        balance = balance.plus(operation.amount);
+                    } else if (!balance.minus(held).isLessThan(operation.amount)) {
+                        balance = balance.minus(operation.amount);
+                    } else {
+                        results.add(OperationResult.insufficientFunds());
+                        continue;
+                    }
+                    entries.add(WalletOperation.of(wallet.getId(), ++seq, operation.type, operation.amount, now));
+                    results.add(OperationResult.success(new WalletResponseDTO(wallet.getId(), wallet.getOwner(), balance, balance.minus(held))));
+                }
+                walletOperationRepository.saveAll(entries);
+                if (!entries.isEmpty()) {
+                    walletOutbox.balanceChanged(wallet.getId(), balance, seq, now);
+                }
+                // один UPDATE при flush, если хоть одна операция прошла
+                wallet.setBalance(balance);
+                wallet.setSnapshotSeq(seq);
+                return null;
+            }));
+        } catch (RuntimeException ex) {
+            log.error("Group commit for wallet {} failed ({} operations)", batch.walletId, operations.size(), ex);
+            operations.forEach(operation -> operation.result.completeExceptionally(ex));
+            return;
+        }
+        // результаты отдаются только после фиксации транзакции
+        for (int i = 0; i < operations.size(); i++) {
+            operations.get(i).result.complete(results.get(i));
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Batch {
+        private final UUID walletId;
+        // изменяется только внутри pending.compute, после извлечения из pending не меняется
+        private final List<PendingOperation> operations = new ArrayList<>();
+
+        private Batch(UUID walletId) {
+            this.walletId = walletId;
+        }
+    }
+
+    private static final class PendingOperation {
+        private final OperationType type;
+        private final Money amount;
+        private final CompletableFuture<OperationResult<WalletResponseDTO>> result = new CompletableFuture<>();
+
+        private PendingOperation(OperationType type, Money amount) {
+            this.type = type;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.wallet.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Хешированное колесо таймеров для истечения холдов: wheelSize корзин по tickMs, холд с дедлайном
+ * в тике t лежит в корзине t mod wheelSize с числом оставшихся оборотов. За тик обходится одна корзина,
+ * поэтому стоимость тика не зависит от числа холдов с дальним сроком, а отдельного таймера на холд нет.
+ * <p>
+ * Новые записи приходят через очередь и раскладываются по корзинам потоком колеса, корзины
+ * доступны только ему. Истёкшие за тик записи отдаются одним списком в sink. Отмена ленивая:
+ * завершённый холд остаётся в колесе до своего тика, sink сверяется с БД.
+ */
+public class HoldTimingWheel implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(HoldTimingWheel.class);
+
+    public record Expired(UUID holdId, UUID walletId) {
+    }
+
+    private final long tickMs;
+    private final List<Entry>[] buckets;
+    private final ConcurrentLinkedQueue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final Consumer<List<Expired>> sink;
+    private final ScheduledExecutorService ticker;
+    private final long startMillis;
+    // последний обработанный тик; изменяется только потоком колеса
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    public HoldTimingWheel(long tickMs, int wheelSize, Consumer<List<Expired>> sink) {
+        if (tickMs < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Timing wheel tick and size must be positive");
+        }
+        this.tickMs = tickMs;
+        this.sink = sink;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.startMillis = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-hold-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advanceSafely, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Планирует истечение холда на deadlineMillis (epoch millis); прошедший дедлайн сработает в ближайший тик.
+     */
+    public void schedule(UUID holdId, UUID walletId, long deadlineMillis) {
+        // округление вверх: холд не истекает раньше срока
+        long deadlineTick = Math.max(0, Math.floorDiv(deadlineMillis - startMillis + tickMs - 1, tickMs));
+        incoming.add(new Entry(holdId, walletId, deadlineTick));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Записей в колесе, включая ещё не разложенные и уже отменённые.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void advanceSafely() {
+        try {
+            advance();
+        } catch (RuntimeException ex) {
+            log.error("Hold timing wheel tick failed", ex);
+        }
+    }
+
+    private void advance() {
+        long now = (System.currentTimeMillis() - startMillis) / tickMs;
+        List<Expired> expired = new ArrayList<>();
+        // после паузы (GC, перегруженный sink) колесо догоняет пропущенные тики
+        while (tick < now) {
+            tick++;
+            Iterator<Entry> bucket = buckets[(int) (tick % buckets.length)].iterator();
+            while (bucket.hasNext()) {
+                Entry entry = bucket.next();
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                } else {
+                    bucket.remove();
+                    expired.add(new Expired(entry.holdId, entry.walletId));
+                }
+            }
+            // после обхода: корзина текущего тика уже пройдена, следующий её обход — через полный оборот
+            for (Entry entry; (entry = incoming.poll()) != null; ) {
+                place(entry, expired);
+            }
+        }
+        if (!expired.isEmpty()) {
+            size.addAndGet(-expired.size());
+            sink.accept(expired);
+        }
+    }
+
+    private void place(Entry entry, List<Expired> expired) {
+        long ahead = entry.deadlineTick - tick;
+        if (ahead <= 0) {
+            expired.add(new Expired(entry.holdId, entry.walletId));
+            return;
+        }
+        // до тика дедлайна его корзина обходится (ahead - 1) / wheelSize раз
+        entry.rounds = (ahead - 1) / buckets.length;
+        buckets[(int) (entry.deadlineTick % buckets.length)].add(entry);
+    }
+
+    private static final class Entry {
+        private final UUID holdId;
+        private final UUID walletId;
+        private final long deadlineTick;
+        private long rounds;
+
+        private Entry(UUID holdId, UUID walletId, long deadlineTick) {
+            this.holdId = holdId;
+            this.walletId = walletId;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
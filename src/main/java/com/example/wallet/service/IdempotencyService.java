@@ -0,0 +1,191 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.ReadYourWrites;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.exception.IdempotencyConflictException;
+import com.example.wallet.model.IdempotencyRecord;
+import com.example.wallet.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Дедупликация повторов по заголовку Idempotency-Key.
+ * <ul>
+ *     <li>повтор в горячем окне отдаётся из LRU без обращения к БД;</li>
+ *     <li>одновременные дубликаты ждут результата первого запроса;</li>
+ *     <li>ключ захватывается в таблице idempotency_keys до выполнения операции,
+ *     так что повтор на другом экземпляре получает сохранённый ответ или 409.</li>
+ * </ul>
+ * Захват без ответа — аренда на lease-seconds: если экземпляр упал до сохранения ответа, после
+ * аренды ключ освобождается и повтор выполняется заново, а не получает 409 весь ttl.
+ * Ключ с ответом действует в пределах кошелька и хранится ttl-seconds, при шардировании — в шарде кошелька.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final WalletShards walletShards;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Cache<String, CachedResponse> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<OperationResult<WalletResponseDTO>>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              ObjectMapper objectMapper,
+                              WalletShards walletShards,
+                              @Value("${wallet.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                              @Value("${wallet.idempotency.lease-seconds:30}") long leaseSeconds,
+                              @Value("${wallet.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${wallet.idempotency.cleanup-interval-ms:60000}") long cleanupIntervalMs) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.walletShards = walletShards;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        // Caffeine вместо synchronized LRU: без монитора виртуальные потоки не прикрепляются к носителю
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(Expiry.creating((String key, CachedResponse cached) ->
+                        Duration.between(LocalDateTime.now(), cached.expiresAt)))
+                .build();
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-idempotency-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::deleteExpired, cleanupIntervalMs, cleanupIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public OperationResult<WalletResponseDTO> execute(UUID walletId, String idempotencyKey,
+                                                      Supplier<OperationResult<WalletResponseDTO>> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1.." + MAX_KEY_LENGTH + " characters");
+        }
+        String key = walletId + ":" + idempotencyKey;
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return OperationResult.success(cached.response);
+        }
+        CompletableFuture<OperationResult<WalletResponseDTO>> mine = new CompletableFuture<>();
+        CompletableFuture<OperationResult<WalletResponseDTO>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return Futures.await(running);
+        }
+        try {
+            OperationResult<WalletResponseDTO> response = walletShards.on(walletId, () -> executeOnce(key, walletId, action));
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    private OperationResult<WalletResponseDTO> executeOnce(String key, UUID walletId,
+                                                           Supplier<OperationResult<WalletResponseDTO>> action) {
+        LocalDateTime now = LocalDateTime.now();
+        // запись ключа только что могла появиться на primary, реплика её ещё не видит
+        Optional<IdempotencyRecord> stored = ReadYourWrites.onPrimary(() -> repository.findById(key));
+        if (stored.isPresent()) {
+            IdempotencyRecord record = stored.get();
+            if (record.getExpiresAt().isAfter(now)) {
+                if (record.getResponse() == null) {
+                    throw new IdempotencyConflictException("Request with this Idempotency-Key is still in progress");
+                }
+                WalletResponseDTO response = deserialize(record.getResponse());
+                cache.put(key, new CachedResponse(response, record.getExpiresAt()));
+                return OperationResult.success(response);
+            }
+            // истёкший ответ или брошенный захват
+            repository.deleteById(key);
+        }
+
+        try {
+            repository.saveAndFlush(new IdempotencyRecord(key, walletId, now, now.plus(lease)));
+        } catch (DataIntegrityViolationException ex) {
+            throw new IdempotencyConflictException("Request with this Idempotency-Key is still in progress");
+        }
+        OperationResult<WalletResponseDTO> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException ex) {
+            // операция не применена — повтор с тем же ключом выполнится заново
+            repository.deleteById(key);
+            throw ex;
+        }
+        if (!result.isSuccess()) {
+            // отказ тоже не меняет баланс, поэтому не запоминается
+            repository.deleteById(key);
+            return result;
+        }
+        LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+        repository.storeResponse(key, serialize(result.value()), expiresAt);
+        cache.put(key, new CachedResponse(result.value(), expiresAt));
+        return result;
+    }
+
+    private void deleteExpired() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int deleted = walletShards.onEachShard(() -> repository.deleteExpired(now)).stream()
+                    .mapToInt(Integer::intValue)
+                    .sum();
+            if (deleted > 0) {
+                log.debug("Deleted {} expired idempotency keys", deleted);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Idempotency key cleanup failed", ex);
+        }
+    }
+
+    private String serialize(WalletResponseDTO response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize wallet response", e);
+        }
+    }
+
+    private WalletResponseDTO deserialize(String json) {
+        try {
+            return objectMapper.readValue(json, WalletResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize stored wallet response", e);
+        }
+    }
+
+    private record CachedResponse(WalletResponseDTO response, LocalDateTime expiresAt) {
+    }
+}
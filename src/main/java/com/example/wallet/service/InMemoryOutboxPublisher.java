@@ -0,0 +1,39 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletEventDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Публикация в память процесса для локального запуска и тестов: хранит последние capacity событий.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.outbox.publisher", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOutboxPublisher implements OutboxPublisher {
+    private final int capacity;
+    private final ArrayDeque<WalletEventDTO> events;
+
+    public InMemoryOutboxPublisher(@Value("${wallet.outbox.memory.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void publish(List<WalletEventDTO> batch) {
+        for (WalletEventDTO event : batch) {
+            if (events.size() == capacity) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<WalletEventDTO> recent() {
+        return new ArrayList<>(events);
+    }
+}
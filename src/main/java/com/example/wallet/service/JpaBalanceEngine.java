@@ -0,0 +1,59 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Движок по умолчанию: каждая операция — атомарный UPDATE строки кошелька
+ * и запись в журнал wallet_operations и в outbox в той же транзакции.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class JpaBalanceEngine implements BalanceEngine {
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final WalletMetrics walletMetrics;
+    private final WalletOutbox walletOutbox;
+
+    public JpaBalanceEngine(WalletRepository walletRepository, WalletOperationRepository walletOperationRepository,
+                            WalletMetrics walletMetrics, WalletOutbox walletOutbox) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.walletMetrics = walletMetrics;
+        this.walletOutbox = walletOutbox;
+    }
+
+    @Override
+    @Transactional
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        LocalDateTime now = LocalDateTime.now();
+        long amount = dto.getAmount().minorUnits();
+        // условный UPDATE сам берёт блокировку строки, его время и есть ожидание конкурентов
+        int updatedRows = walletMetrics.recordLockWait("jpa", () -> dto.getOperationType() == OperationType.DEPOSIT
+                ? walletRepository.deposit(id, amount, now)
+                : walletRepository.withdraw(id, amount, now));
+        if (updatedRows == 0) {
+            if (dto.getOperationType() == OperationType.WITHDRAW && walletRepository.existsById(id)) {
+                return OperationResult.insufficientFunds();
+            }
+            return OperationResult.notFound();
+        }
+        Wallet updated = walletRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("Wallet " + id + " disappeared after update"));
+        walletOperationRepository.save(
+                WalletOperation.of(id, updated.getSnapshotSeq(), dto.getOperationType(), dto.getAmount(), now));
+        walletOutbox.balanceChanged(id, updated.getBalance(), updated.getSnapshotSeq(), now);
+        return OperationResult.success(WalletResponseDTO.from(updated));
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.LedgerTail;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Append-only режим: операция — только INSERT в wallet_operations со следующим seq кошелька,
+ * строка wallets не обновляется. Текущий баланс = снапшот (wallets.balance по snapshotSeq) + хвост журнала.
+ * Снапшот переносится вперёд каждые snapshot-every операций и фоново раз в snapshot-interval-ms.
+ * Фоновый перенос обходит только кошельки, в журнал которых этот экземпляр писал с прошлого обхода;
+ * хвосты, оставшиеся от прошлого запуска, один раз находятся запросом при первом обходе.
+ * Гонка за один seq разрешается уникальным ключом (wallet_id, seq) и повтором.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.mode", havingValue = "ledger")
+public class LedgerBalanceEngine implements BalanceEngine {
+    private static final Logger log = LoggerFactory.getLogger(LedgerBalanceEngine.class);
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final WalletOutbox walletOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final int snapshotEvery;
+    private final int maxRetries;
+    private final ScheduledExecutorService snapshotter;
+    // кошельки с возможным хвостом журнала; пополняется после коммита, разбирается снапшоттером
+    private final Set<UUID> withTail = ConcurrentHashMap.newKeySet();
+    // первый обход ещё не искал хвосты прошлого запуска; изменяется только потоком снапшоттера
+    private boolean tailsLoaded;
+
+    public LedgerBalanceEngine(WalletRepository walletRepository,
+                               WalletOperationRepository walletOperationRepository,
+                               WalletOutbox walletOutbox,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${wallet.ledger.snapshot-every:100}") int snapshotEvery,
+                               @Value("${wallet.ledger.snapshot-interval-ms:5000}") long snapshotIntervalMs,
+                               @Value("${wallet.ledger.max-retries:100}") int maxRetries) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.walletOutbox = walletOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotEvery = snapshotEvery;
+        this.maxRetries = maxRetries;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-ledger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::refreshAllSnapshots, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                OperationResult<WalletResponseDTO> result =
+                        transactionTemplate.execute(status -> append(id, dto.getOperationType(), dto.getAmount()));
+                if (result.isSuccess()) {
+                    withTail.add(id);
+                }
+                return result;
+            } catch (DataIntegrityViolationException ex) {
+                // другой запрос успел занять этот seq
+                if (attempt >= maxRetries) {
+                    throw new OptimisticLockingFailureException("Too much contention on wallet " + id, ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public WalletResponseDTO read(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        Wallet wallet = walletRepository.findById(id).orElse(null);
+        if (wallet == null) {
+            return null;
+        }
+        LedgerTail tail = walletOperationRepository.tail(id, wallet.getSnapshotSeq());
+        Money balance = wallet.getBalance().plus(tail.delta());
+        return new WalletResponseDTO(wallet.getId(), wallet.getOwner(), balance, balance.minus(wallet.getHeld()));
+    }
+
+    @Override
+    public <T> T exclusive(UUID id, Supplier<T> action) {
+        refreshSnapshot(id);
+        return action.get();
+    }
+
+    @Override
+    public boolean rowIsAuthoritative() {
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotter.shutdownNow();
+    }
+
+    private OperationResult<WalletResponseDTO> append(UUID id, OperationType type, Money amount) {
+        Wallet wallet = walletRepository.findById(id).orElse(null);
+        if (wallet == null) {
+            return OperationResult.notFound();
+        }
+        LedgerTail tail = walletOperationRepository.tail(id, wallet.getSnapshotSeq());
+        Money balance = wallet.getBalance().plus(tail.delta());
+        if (type == OperationType.WITHDRAW && balance.minus(wallet.getHeld()).isLessThan(amount)) {
+            return OperationResult.insufficientFunds();
+        }
+        long seq = tail.lastSeq() + 1;
+        LocalDateTime now = LocalDateTime.now();
+        WalletOperation entry = walletOperationRepository.saveAndFlush(WalletOperation.of(id, seq, type, amount, now));
+        Money newBalance = balance.plus(entry.getDelta());
+        walletOutbox.balanceChanged(id, newBalance, seq, now);
+        if (seq - wallet.getSnapshotSeq() >= snapshotEvery) {
+            walletRepository.advanceSnapshot(id, newBalance.minus(wallet.getBalance()).minorUnits(), wallet.getSnapshotSeq(), seq, now);
+        }
+        return OperationResult.success(new WalletResponseDTO(wallet.getId(), wallet.getOwner(), newBalance,
+                newBalance.minus(wallet.getHeld())));
+    }
+
+    private void refreshSnapshot(UUID id) {
+        transactionTemplate.executeWithoutResult(status -> walletRepository.findById(id).ifPresent(wallet -> {
+            LedgerTail tail = walletOperationRepository.tail(id, wallet.getSnapshotSeq());
+            if (tail.lastSeq() > wallet.getSnapshotSeq()) {
+                walletRepository.advanceSnapshot(id, tail.delta().minorUnits(), wallet.getSnapshotSeq(), tail.lastSeq(), LocalDateTime.now());
+            }
+        }));
+    }
+
+    private void refreshAllSnapshots() {
+        try {
+            if (!tailsLoaded) {
+                withTail.addAll(walletOperationRepository.findWalletsWithTail());
+                tailsLoaded = true;
+            }
+            for (Iterator<UUID> it = withTail.iterator(); it.hasNext(); ) {
+                UUID id = it.next();
+                // удаление до переноса: операция, закоммиченная во время переноса, вернёт кошелёк в набор
+                it.remove();
+                try {
+                    refreshSnapshot(id);
+                } catch (RuntimeException ex) {
+                    withTail.add(id);
+                    throw ex;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.error("Periodic snapshot refresh failed", ex);
+        }
+    }
+
+    /**
+     * Дописывание в журнал не блокирует строку: CAPTURE разошёлся бы с параллельным WITHDRAW.
+     */
+    @Override
+    public boolean supportsHolds() {
+        return false;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.wallet.service;
+
+import com.example.wallet.repository.LedgerTail;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Пересчитывает балансы всех кошельков из журнала wallet_operations: balance = SUM(delta),
+ * snapshotSeq = MAX(seq). Кошельки обходятся страницами по id и пересчитываются параллельно.
+ * Строки блокируются на время пересчёта; в режиме sharded запускать только без трафика.
+ * Запуск при старте: --wallet.ledger.rebuild-on-startup=true
+ */
+@Component
+public class LedgerRebuilder implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(LedgerRebuilder.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean rebuildOnStartup;
+    private final int parallelism;
+
+    public LedgerRebuilder(WalletRepository walletRepository,
+                           WalletOperationRepository walletOperationRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${wallet.ledger.rebuild-on-startup:false}") boolean rebuildOnStartup,
+                           @Value("${wallet.ledger.rebuild-parallelism:4}") int parallelism) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (rebuildOnStartup) {
+            long started = System.currentTimeMillis();
+            long rebuilt = rebuildAll();
+            log.info("Rebuilt {} wallet balances from ledger in {} ms", rebuilt, System.currentTimeMillis() - started);
+        }
+    }
+
+    /**
+     * @return количество пересчитанных кошельков
+     */
+    public long rebuildAll() {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            long rebuilt = 0;
+            UUID after = new UUID(0, 0);
+            List<UUID> page;
+            do {
+                page = walletRepository.findIdsAfter(after, PageRequest.ofSize(PAGE_SIZE));
+                List<Future<?>> futures = new ArrayList<>(page.size());
+                for (UUID id : page) {
+                    futures.add(executor.submit(() -> rebuild(id)));
+                }
+                for (Future<?> future : futures) {
+                    Futures.await(future);
+                }
+                rebuilt += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1);
+                }
+            } while (page.size() == PAGE_SIZE);
+            return rebuilt;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void rebuild(UUID id) {
+        transactionTemplate.executeWithoutResult(status -> walletRepository.findByIdForUpdate(id).ifPresent(wallet -> {
+            LedgerTail all = walletOperationRepository.tail(id, 0);
+            walletRepository.setBalance(id, all.delta().minorUnits(), all.lastSeq(), LocalDateTime.now());
+        }));
+    }
+}
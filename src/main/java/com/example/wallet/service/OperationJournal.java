@@ -0,0 +1,384 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.OperationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный журнал операций для режима write-behind: сегменты фиксированного размера, отображённые
+ * в память (segment-NNN.log, NNN — lsn первой записи). Запись — [длина][CRC32C][тело], тело —
+ * lsn, кошелёк, seq, тип, сумма и баланс после операции. Запись с неверной длиной или контрольной суммой
+ * считается концом сегмента: так отбрасывается недописанный хвост. Разрыв lsn между целыми записями
+ * или сегментами — повреждение журнала, открытие падает.
+ * <p>
+ * Политика fsync: every-op — force после каждой записи, до подтверждения; interval — фоновый force
+ * раз в fsync-interval-ms, подтверждение сразу; group — подтверждение ждёт ближайшего общего force,
+ * который покрывает все записи, накопившиеся за предыдущий. Падение процесса без падения ОС
+ * записи не теряет при любой политике: страницы отображения остаются в page cache.
+ * <p>
+ * Сегмент удаляется, когда все его записи сброшены в БД ({@link #releaseFlushed}).
+ */
+public class OperationJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(OperationJournal.class);
+    private static final int BODY_SIZE = 8 * 7 + 1;
+    private static final int RECORD_SIZE = 4 + 4 + BODY_SIZE;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    public enum FsyncPolicy {
+        EVERY_OP, INTERVAL, GROUP;
+
+        public static FsyncPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    public record Entry(long lsn, UUID walletId, long seq, OperationType type,
+                        long amount, long balanceAfter, long timestamp) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    // закрытые, но ещё не сброшенные в БД сегменты, по возрастанию lsn
+    private final ArrayDeque<Segment> closed = new ArrayDeque<>();
+    private final List<Entry> recovered;
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService syncer;
+    private Segment active;
+    private long lastLsn;
+    private long durableLsn;
+    private volatile boolean closing;
+
+    public OperationJournal(Path directory, int segmentSize, FsyncPolicy policy, long fsyncIntervalMs) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("Journal segment must fit at least one record");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.policy = policy;
+        try {
+            Files.createDirectories(directory);
+            this.recovered = Collections.unmodifiableList(scan());
+            this.active = openSegment(lastLsn + 1);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open operation journal in " + directory, ex);
+        }
+        this.durableLsn = lastLsn;
+        this.syncer = policy == FsyncPolicy.EVERY_OP ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == FsyncPolicy.INTERVAL) {
+            syncer.scheduleWithFixedDelay(this::syncSafely, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else if (policy == FsyncPolicy.GROUP) {
+            syncer.execute(this::groupSyncLoop);
+        }
+    }
+
+    /**
+     * Записи, найденные при открытии журнала (не обязательно ещё не сброшенные: это решает вызывающий).
+     */
+    public List<Entry> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Дописывает запись. oldestPending — lsn самой старой несброшенной записи вызывающего,
+     * выставляется под блокировкой журнала, если был Long.MAX_VALUE.
+     * @return lsn записи
+     */
+    public long append(UUID walletId, long seq, OperationType type, long amount, long balanceAfter,
+                       AtomicLong oldestPending) {
+        lock.lock();
+        try {
+            if (active.position + RECORD_SIZE > segmentSize) {
+                roll();
+            }
+            long lsn = lastLsn + 1;
+            int position = active.position;
+            MappedByteBuffer buffer = active.buffer;
+            int body = position + 8;
+            buffer.putLong(body, lsn);
+            buffer.putLong(body + 8, walletId.getMostSignificantBits());
+            buffer.putLong(body + 16, walletId.getLeastSignificantBits());
+            buffer.putLong(body + 24, seq);
+            buffer.put(body + 32, encodeType(type));
+            buffer.putLong(body + 33, amount);
+            buffer.putLong(body + 41, balanceAfter);
+            buffer.putLong(body + 49, System.currentTimeMillis());
+            buffer.putInt(position + 4, checksum(buffer, body));
+            // длина пишется последней: без неё запись не считается начатой
+            buffer.putInt(position, BODY_SIZE);
+            active.position += RECORD_SIZE;
+            active.lastLsn = lsn;
+            lastLsn = lsn;
+            oldestPending.compareAndSet(Long.MAX_VALUE, lsn);
+            if (policy == FsyncPolicy.EVERY_OP) {
+                buffer.force(position, RECORD_SIZE);
+                durableLsn = lsn;
+            } else if (policy == FsyncPolicy.GROUP) {
+                appended.signal();
+            }
+            return lsn;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot append to operation journal", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока запись lsn станет durable; ожидание есть только у политики group.
+     */
+    public void awaitDurable(long lsn) {
+        if (policy != FsyncPolicy.GROUP) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (closing) {
+                    throw new IllegalStateException("Operation journal is closed");
+                }
+                durable.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for journal fsync", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет закрытые сегменты, все записи которых старше oldestPending (минимум по писателям).
+     */
+    public void releaseFlushed(LongSupplier oldestPending) {
+        lock.lock();
+        try {
+            long flushed = Math.min(oldestPending.getAsLong() - 1, lastLsn);
+            while (!closed.isEmpty() && closed.peekFirst().lastLsn <= flushed) {
+                Segment segment = closed.pollFirst();
+                Files.deleteIfExists(segment.path);
+                log.debug("Released journal segment {}", segment.path.getFileName());
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot delete flushed journal segment", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        lock.lock();
+        try {
+            active.buffer.force();
+            active.channel.close();
+            durable.signalAll();
+        } catch (IOException ex) {
+            log.warn("Cannot close operation journal", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void groupSyncLoop() {
+        while (!closing) {
+            MappedByteBuffer buffer;
+            long target;
+            lock.lock();
+            try {
+                while (durableLsn >= lastLsn) {
+                    appended.await();
+                }
+                target = lastLsn;
+                buffer = active.buffer;
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            // force вне блокировки: записи продолжаются и попадут в следующий force
+            buffer.force();
+            lock.lock();
+            try {
+                durableLsn = Math.max(durableLsn, target);
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void syncSafely() {
+        try {
+            MappedByteBuffer buffer;
+            lock.lock();
+            try {
+                buffer = active.buffer;
+            } finally {
+                lock.unlock();
+            }
+            buffer.force();
+        } catch (RuntimeException ex) {
+            log.error("Operation journal fsync failed", ex);
+        }
+    }
+
+    private void roll() throws IOException {
+        // закрываемый сегмент всегда durable: фоновые force работают только с активным
+        active.buffer.force();
+        active.channel.close();
+        active.buffer = null;
+        closed.addLast(active);
+        active = openSegment(lastLsn + 1);
+    }
+
+    private Segment openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(path, firstLsn - 1);
+        segment.channel = channel;
+        segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return segment;
+    }
+
+    private List<Entry> scan() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path path : paths) {
+            long firstLsn = firstLsn(path);
+            // первый сегмент продолжает сброшенные и удалённые; дальше сегменты идут без разрывов,
+            // в том числе после недописанного хвоста: следующий сегмент открывается с lsn после последней целой записи
+            if (!closed.isEmpty() && firstLsn != lastLsn + 1) {
+                throw new IllegalStateException("Operation journal is corrupted: " + path.getFileName()
+                        + " does not continue lsn " + lastLsn);
+            }
+            lastLsn = firstLsn - 1;
+            Segment segment = new Segment(path, lastLsn);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int position = 0;
+                while (position + RECORD_SIZE <= buffer.limit()) {
+                    int body = position + 8;
+                    if (buffer.getInt(position) != BODY_SIZE
+                            || buffer.getInt(position + 4) != checksum(buffer, body)) {
+                        break;
+                    }
+                    long lsn = buffer.getLong(body);
+                    if (lsn != lastLsn + 1) {
+                        throw new IllegalStateException("Operation journal is corrupted: " + path.getFileName()
+                                + " has lsn " + lsn + " after " + lastLsn);
+                    }
+                    entries.add(new Entry(lsn,
+                            new UUID(buffer.getLong(body + 8), buffer.getLong(body + 16)),
+                            buffer.getLong(body + 24),
+                            decodeType(buffer.get(body + 32)),
+                            buffer.getLong(body + 33),
+                            buffer.getLong(body + 41),
+                            buffer.getLong(body + 49)));
+                    lastLsn = lsn;
+                    position += RECORD_SIZE;
+                }
+            }
+            segment.lastLsn = lastLsn;
+            if (lastLsn < firstLsn) {
+                // пустой сегмент (активный при остановке): новый откроется с тем же lsn и именем
+                Files.delete(path);
+            } else {
+                closed.addLast(segment);
+            }
+        }
+        if (!paths.isEmpty()) {
+            log.info("Operation journal: {} segments, {} records up to lsn {}", paths.size(), entries.size(), lastLsn);
+        }
+        return entries;
+    }
+
+    private static long firstLsn(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Unexpected operation journal file " + name, ex);
+        }
+    }
+
+    // коды типов на диске фиксированы и не зависят от порядка констант OperationType
+
+    private static byte encodeType(OperationType type) {
+        return switch (type) {
+            case DEPOSIT -> 0;
+            case WITHDRAW -> 1;
+            default -> throw new IllegalArgumentException(type + " is not journaled");
+        };
+    }
+
+    private static OperationType decodeType(byte code) {
+        return switch (code) {
+            case 0 -> OperationType.DEPOSIT;
+            case 1 -> OperationType.WITHDRAW;
+            default -> throw new IllegalStateException("Operation journal is corrupted: unknown operation type " + code);
+        };
+    }
+
+    private int checksum(MappedByteBuffer buffer, int body) {
+        crc.reset();
+        crc.update(buffer.slice(body, BODY_SIZE));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int position;
+        private long lastLsn;
+
+        private Segment(Path path, long lastLsn) {
+            this.path = path;
+            this.lastLsn = lastLsn;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.wallet.service;
+
+import java.util.function.Function;
+
+/**
+ * Исход операции с кошельком. Отказы (нехватка средств, нет кошелька) — штатные результаты,
+ * а не исключения: на пике выплат их доля велика, и стек-трейс на каждый отказ слишком дорог.
+ * Экземпляры отказов общие и не аллоцируются.
+ */
+public record OperationResult<T>(Status status, T value) {
+    public enum Status { SUCCESS, INSUFFICIENT_FUNDS, NOT_FOUND }
+
+    private static final OperationResult<?> INSUFFICIENT_FUNDS = new OperationResult<>(Status.INSUFFICIENT_FUNDS, null);
+    private static final OperationResult<?> NOT_FOUND = new OperationResult<>(Status.NOT_FOUND, null);
+
+    public static <T> OperationResult<T> success(T value) {
+        return new OperationResult<>(Status.SUCCESS, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> OperationResult<T> insufficientFunds() {
+        return (OperationResult<T>) INSUFFICIENT_FUNDS;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> OperationResult<T> notFound() {
+        return (OperationResult<T>) NOT_FOUND;
+    }
+
+    public static <T> OperationResult<T> foundOrNot(T value) {
+        return value != null ? success(value) : notFound();
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * Преобразует значение успешного результата; отказ возвращается как есть.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> OperationResult<R> map(Function<? super T, ? extends R> mapper) {
+        return isSuccess() ? success(mapper.apply(value)) : (OperationResult<R>) this;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletEventDTO;
+
+import java.util.List;
+
+/**
+ * Получатель событий outbox. Реализация выбирается свойством {@code wallet.outbox.publisher}.
+ * События приходят по возрастанию eventId; метод возвращается только после того, как пачка
+ * принята целиком, исключение — пачка будет отправлена повторно.
+ */
+public interface OutboxPublisher {
+
+    void publish(List<WalletEventDTO> events) throws Exception;
+}
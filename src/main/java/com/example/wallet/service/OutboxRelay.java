@@ -0,0 +1,143 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletEventDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.OutboxEvent;
+import com.example.wallet.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая доставка outbox: берёт до batch-size старейших событий, отдаёт их {@link OutboxPublisher}
+ * и удаляет в той же транзакции. Если публикация или удаление не удались, транзакция откатывается
+ * и пачка уходит повторно (at-least-once). Пачки идут по возрастанию id в одном потоке, поэтому
+ * порядок событий кошелька сохраняется; при нескольких экземплярах relay включают на одном из них.
+ * При шардировании у каждого шарда свой outbox, они разбираются по очереди; eventId уникален в пределах шарда.
+ * <p>
+ * Метрики: wallet.outbox.relay.lag — возраст события в момент публикации,
+ * wallet.outbox.relay.batch_size — размер пачки, wallet.outbox.relay.failures — неудачные попытки.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository repository;
+    private final OutboxPublisher publisher;
+    private final WalletShards walletShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+    private final Counter failures;
+    private final ScheduledExecutorService executor;
+
+    public OutboxRelay(OutboxEventRepository repository,
+                       OutboxPublisher publisher,
+                       WalletShards walletShards,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${wallet.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${wallet.outbox.relay.poll-interval-ms:100}") long pollIntervalMs) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.walletShards = walletShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.lag = Timer.builder("wallet.outbox.relay.lag")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("wallet.outbox.relay.batch_size")
+                .register(meterRegistry);
+        this.failures = Counter.builder("wallet.outbox.relay.failures")
+                .register(meterRegistry);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::drainSafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отправляет всё, что накопилось, пачками; возвращает число отправленных событий.
+     */
+    public synchronized long drain() {
+        long published = 0;
+        for (int shard = 0; shard < walletShards.count(); shard++) {
+            published += walletShards.onShard(shard, this::drainShard);
+        }
+        return published;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private long drainShard() {
+        long published = 0;
+        int sent;
+        do {
+            sent = relayBatch();
+            published += sent;
+        } while (sent == batchSize);
+        return published;
+    }
+
+    private int relayBatch() {
+        Integer sent = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = repository.findOldest(PageRequest.ofSize(batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            List<WalletEventDTO> batch = new ArrayList<>(events.size());
+            List<Long> ids = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                batch.add(WalletEventDTO.from(event));
+                ids.add(event.getId());
+            }
+            try {
+                publisher.publish(batch);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Outbox publisher rejected " + batch.size() + " events", ex);
+            }
+            repository.deleteAllByIdInBatch(ids);
+            LocalDateTime now = LocalDateTime.now();
+            for (OutboxEvent event : events) {
+                lag.record(Duration.between(event.getCreatedAt(), now));
+            }
+            batchSizes.record(events.size());
+            return events.size();
+        });
+        return sent != null ? sent : 0;
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException ex) {
+            failures.increment();
+            log.error("Outbox relay failed, will retry", ex);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Движок для "горячих" кошельков: id кошелька хешируется в один из N шардов,
+ * каждый шард обслуживается одним потоком и хранит авторитетные балансы в памяти.
+ * Операции применяются без блокировок и сбрасываются в БД упорядоченными пачками
+ * (записи журнала + итоговые балансы) по таймеру или по достижении batch-size, см. {@link SingleWriterShards}.
+ * <p>
+ * Предполагается, что кошельками владеет один экземпляр сервиса.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.mode", havingValue = "sharded")
+public class ShardedBalanceEngine implements BalanceEngine {
+    private final SingleWriterShards shards;
+
+    public ShardedBalanceEngine(WalletRepository walletRepository,
+                                WalletOperationRepository walletOperationRepository,
+                                WalletOutbox walletOutbox,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${wallet.engine.sharded.shards:4}") int shardCount,
+                                @Value("${wallet.engine.sharded.batch-size:500}") int batchSize,
+                                @Value("${wallet.engine.sharded.flush-interval-ms:20}") long flushIntervalMs) {
+        this.shards = new SingleWriterShards("wallet-shard-", shardCount, batchSize, walletRepository,
+                walletOperationRepository, walletOutbox, new TransactionTemplate(transactionManager), index -> {
+        });
+        shards.startFlushing(flushIntervalMs);
+    }
+
+    @Override
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        SingleWriterShards.Shard shard = shards.shardFor(id);
+        return shard.call(() -> apply(shard, id, dto.getOperationType(), dto.getAmount()));
+    }
+
+    @Override
+    public WalletResponseDTO read(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        return shards.read(id, loader);
+    }
+
+    @Override
+    public <T> T exclusive(UUID id, Supplier<T> action) {
+        return shards.exclusive(id, action);
+    }
+
+    @Override
+    public boolean rowIsAuthoritative() {
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shards.shutdown();
+    }
+
+    private static OperationResult<WalletResponseDTO> apply(SingleWriterShards.Shard shard, UUID id,
+                                                            OperationType type, Money amount) {
+        SingleWriterShards.WalletState state = shard.load(id);
+        if (state == null) {
+            return OperationResult.notFound();
+        }
+        Money balance = state.balanceAfter(type, amount);
+        if (balance == null) {
+            return OperationResult.insufficientFunds();
+        }
+        shard.applied(state, type, amount, balance);
+        return OperationResult.success(state.toResponse());
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Однопоточные шарды кошельков для движков sharded и write-behind: id кошелька хешируется в один
+ * из N шардов, поток шарда хранит авторитетные балансы в памяти и сбрасывает их в БД упорядоченными
+ * пачками (записи журнала операций + итоговые балансы) по таймеру или по достижении batch-size.
+ * Кошелёк, не менявшийся за интервал сброса, из памяти выгружается и при следующей операции читается из строки.
+ * <p>
+ * Движок проверяет и применяет операцию в потоке шарда ({@link Shard#call}): {@link Shard#load},
+ * {@link WalletState#balanceAfter}, своя часть (например, запись в журнал) и {@link Shard#applied}.
+ */
+final class SingleWriterShards {
+    private static final Logger log = LoggerFactory.getLogger(SingleWriterShards.class);
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final WalletOutbox walletOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final IntConsumer afterFlush;
+    private final Shard[] shards;
+
+    /**
+     * @param threadPrefix префикс имени потока шарда, к нему добавляется номер
+     * @param afterFlush вызывается в потоке шарда с его номером после успешного сброса
+     */
+    SingleWriterShards(String threadPrefix, int shardCount, int batchSize,
+                       WalletRepository walletRepository,
+                       WalletOperationRepository walletOperationRepository,
+                       WalletOutbox walletOutbox,
+                       TransactionTemplate transactionTemplate,
+                       IntConsumer afterFlush) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.walletOutbox = walletOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.afterFlush = afterFlush;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(threadPrefix, i);
+        }
+    }
+
+    void startFlushing(long flushIntervalMs) {
+        for (Shard shard : shards) {
+            shard.executor.scheduleWithFixedDelay(shard::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    Shard shardFor(UUID id) {
+        return shards[(id.hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    WalletResponseDTO read(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        Shard shard = shardFor(id);
+        return shard.call(() -> {
+            WalletState state = shard.wallets.get(id);
+            return state != null ? state.toResponse() : loader.apply(id);
+        });
+    }
+
+    /**
+     * Сбрасывает шард, забывает состояние кошелька и выполняет action в потоке шарда:
+     * следующая операция перечитает строку, изменённую action.
+     */
+    <T> T exclusive(UUID id, Supplier<T> action) {
+        Shard shard = shardFor(id);
+        return shard.call(() -> {
+            shard.flush();
+            shard.wallets.remove(id);
+            return action.get();
+        });
+    }
+
+    /**
+     * Последний сброс и остановка потоков; несброшенное при ошибке остаётся в памяти.
+     */
+    void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.execute(shard::flushSafely);
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                if (!shard.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Shard {} did not finish flushing in time", shard.name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    static final class WalletState {
+        private final UUID id;
+        private final String owner;
+        // холды меняются только через exclusive, после которого состояние перечитывается из строки
+        private final Money held;
+        private Money balance;
+        private long seq;
+
+        private WalletState(UUID id, String owner, Money balance, Money held, long seq) {
+            this.id = id;
+            this.owner = owner;
+            this.balance = balance;
+            this.held = held;
+            this.seq = seq;
+        }
+
+        long seq() {
+            return seq;
+        }
+
+        /**
+         * Баланс после операции или null, если на WITHDRAW не хватает доступных средств.
+         */
+        Money balanceAfter(OperationType type, Money amount) {
+            if (type == OperationType.DEPOSIT) {
+                return balance.plus(amount);
+            }
+            return balance.minus(held).isLessThan(amount) ? null : balance.minus(amount);
+        }
+
+        WalletResponseDTO toResponse() {
+            return new WalletResponseDTO(id, owner, balance, balance.minus(held));
+        }
+    }
+
+    /**
+     * Операция, ещё не записанная в БД. Сущность создаётся заново при каждой попытке сброса:
+     * после отката транзакции у прежней остался бы выданный id, и повторный saveAll считал бы её удалённой.
+     */
+    private record PendingOperation(UUID walletId, long seq, OperationType type, Money amount, LocalDateTime createdAt) {
+        private WalletOperation toEntity() {
+            return WalletOperation.of(walletId, seq, type, amount, createdAt);
+        }
+    }
+
+    final class Shard {
+        private final int index;
+        private final String name;
+        private final ScheduledExecutorService executor;
+        // состояние доступно только из потока шарда
+        private final Map<UUID, WalletState> wallets = new HashMap<>();
+        private final Map<UUID, WalletState> dirty = new LinkedHashMap<>();
+        private final List<PendingOperation> pending = new ArrayList<>();
+
+        private Shard(String threadPrefix, int index) {
+            this.index = index;
+            this.name = threadPrefix + index;
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        int index() {
+            return index;
+        }
+
+        <T> T call(Callable<T> task) {
+            return Futures.await(executor.submit(task));
+        }
+
+        /**
+         * Состояние кошелька из памяти или из строки; null — кошелька нет.
+         */
+        WalletState load(UUID id) {
+            WalletState state = wallets.get(id);
+            if (state == null) {
+                Wallet wallet = walletRepository.findById(id).orElse(null);
+                if (wallet == null) {
+                    return null;
+                }
+                state = new WalletState(wallet.getId(), wallet.getOwner(), wallet.getBalance(), wallet.getHeld(), wallet.getSnapshotSeq());
+                wallets.put(id, state);
+            }
+            return state;
+        }
+
+        /**
+         * Применяет проверенную операцию к состоянию и ставит её в очередь на сброс.
+         */
+        void applied(WalletState state, OperationType type, Money amount, Money balance) {
+            state.balance = balance;
+            state.seq++;
+            pending.add(new PendingOperation(state.id, state.seq, type, amount, LocalDateTime.now()));
+            dirty.put(state.id, state);
+            if (pending.size() >= batchSize) {
+                // операция уже применена: ошибка сброса не должна вернуться клиенту, иначе повтор применит её дважды
+                flushSafely();
+            }
+        }
+
+        private void flush() {
+            if (dirty.isEmpty()) {
+                wallets.clear();
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                walletOperationRepository.saveAll(pending.stream().map(PendingOperation::toEntity).toList());
+                for (WalletState state : dirty.values()) {
+                    walletRepository.setBalance(state.id, state.balance.minorUnits(), state.seq, now);
+                    walletOutbox.balanceChanged(state.id, state.balance, state.seq, now);
+                }
+            });
+            // не менявшиеся с прошлого сброса кошельки совпадают со строкой: в памяти остаются только активные
+            wallets.keySet().retainAll(dirty.keySet());
+            pending.clear();
+            dirty.clear();
+            afterFlush.accept(index);
+        }
+
+        private void flushSafely() {
+            try {
+                flush();
+            } catch (RuntimeException ex) {
+                // операции остаются в pending и будут записаны следующей попыткой
+                log.error("Failed to flush shard {} ({} operations pending)", name, pending.size(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.wallet.service;
+
+import com.example.wallet.exception.WalletOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Допуск операций с балансом (PATCH /api/wallets/{id}) до WalletService: запрос сверх лимита
+ * сразу получает 429 с Retry-After, а не занимает поток и соединение в очереди за блокировкой строки.
+ * <ul>
+ *     <li>на кошелёк — не больше per-wallet-limit операций одновременно; счётчик (AtomicInteger, CAS без
+ *     блокировок) есть только у кошелька с операциями в работе и удаляется при нуле, поэтому чужой горячий
+ *     кошелёк лимит не занимает;</li>
+ *     <li>всего — адаптивный лимит: раз в adjust-interval-ms минимальная за окно длительность операции
+ *     сравнивается с базовой; рост больше чем в latency-tolerance раз уменьшает лимит, иначе он растёт
+ *     на sqrt(limit), пока окно его выбирало. Берётся минимум, а не среднее: ожидание блокировки
+ *     горячего кошелька не должно приниматься за медленную БД.</li>
+ * </ul>
+ * Метрики: wallet.admission.in_flight, wallet.admission.limit, wallet.admission.rejected{reason}.
+ */
+@Component
+public class WalletAdmission {
+    private static final Logger log = LoggerFactory.getLogger(WalletAdmission.class);
+
+    private final boolean enabled;
+    private final int perWalletLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final long retryAfterSeconds;
+    // счётчик, дошедший до нуля, больше не увеличивается: его удаляют и заводят новый
+    private final ConcurrentHashMap<UUID, AtomicInteger> walletInFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // пик in_flight и минимальная длительность за текущее окно
+    private final AtomicInteger windowPeak = new AtomicInteger();
+    private final AtomicLong windowMinNanos = new AtomicLong(Long.MAX_VALUE);
+    private final Counter walletRejections;
+    private final Counter globalRejections;
+    private final ScheduledExecutorService adjuster;
+    private volatile int limit;
+    // изменяются только потоком adjuster
+    private long baselineNanos = Long.MAX_VALUE;
+    private double estimatedLimit;
+
+    public WalletAdmission(MeterRegistry meterRegistry,
+                           @Value("${wallet.admission.enabled:true}") boolean enabled,
+                           @Value("${wallet.admission.per-wallet-limit:8}") int perWalletLimit,
+                           @Value("${wallet.admission.initial-limit:64}") int initialLimit,
+                           @Value("${wallet.admission.min-limit:8}") int minLimit,
+                           @Value("${wallet.admission.max-limit:512}") int maxLimit,
+                           @Value("${wallet.admission.latency-tolerance:2.0}") double latencyTolerance,
+                           @Value("${wallet.admission.adjust-interval-ms:100}") long adjustIntervalMs,
+                           @Value("${wallet.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.perWalletLimit = perWalletLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = limit;
+        Gauge.builder("wallet.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Balance operations admitted and not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("wallet.admission.limit", this, admission -> admission.limit)
+                .description("Current adaptive limit of concurrent balance operations")
+                .register(meterRegistry);
+        this.walletRejections = rejections(meterRegistry, "wallet");
+        this.globalRejections = rejections(meterRegistry, "global");
+        this.adjuster = enabled ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wallet-admission");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (enabled) {
+            adjuster.scheduleWithFixedDelay(this::adjustSafely, adjustIntervalMs, adjustIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Выполняет операцию над кошельком, если она проходит оба лимита.
+     * @throws WalletOverloadedException лимит кошелька или общий исчерпан
+     */
+    public <T> T admit(UUID walletId, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        AtomicInteger walletCounter = tryAcquireWallet(walletId);
+        if (walletCounter == null) {
+            walletRejections.increment();
+            throw new WalletOverloadedException("Too many concurrent operations on wallet " + walletId, retryAfterSeconds);
+        }
+        try {
+            int current = tryAcquireGlobal();
+            if (current < 0) {
+                globalRejections.increment();
+                throw new WalletOverloadedException("Too many concurrent wallet operations", retryAfterSeconds);
+            }
+            windowPeak.accumulateAndGet(current, Math::max);
+            long start = System.nanoTime();
+            try {
+                return action.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                windowMinNanos.accumulateAndGet(elapsed, Math::min);
+                inFlight.decrementAndGet();
+            }
+        } finally {
+            if (walletCounter.decrementAndGet() == 0) {
+                walletInFlight.remove(walletId, walletCounter);
+            }
+        }
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (adjuster != null) {
+            adjuster.shutdownNow();
+        }
+    }
+
+    private int tryAcquireGlobal() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private void adjustSafely() {
+        try {
+            adjust();
+        } catch (RuntimeException ex) {
+            log.error("Failed to adjust admission limit", ex);
+        }
+    }
+
+    private void adjust() {
+        long sample = windowMinNanos.getAndSet(Long.MAX_VALUE);
+        int peak = windowPeak.getAndSet(0);
+        if (sample == Long.MAX_VALUE) {
+            return;
+        }
+        // база медленно догоняет рост: иначе один удачный замер навсегда занизит лимит
+        baselineNanos = sample < baselineNanos ? sample : baselineNanos + (sample - baselineNanos) / 64;
+        if (sample > baselineNanos * latencyTolerance) {
+            estimatedLimit = estimatedLimit * Math.max(0.5, baselineNanos * latencyTolerance / sample);
+        } else if (peak * 2 >= limit) {
+            estimatedLimit += Math.sqrt(estimatedLimit);
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * @return счётчик кошелька с занятым местом или null, если лимит кошелька исчерпан
+     */
+    private AtomicInteger tryAcquireWallet(UUID walletId) {
+        while (true) {
+            AtomicInteger counter = walletInFlight.get(walletId);
+            if (counter == null) {
+                if (perWalletLimit < 1) {
+                    return null;
+                }
+                AtomicInteger created = new AtomicInteger(1);
+                if (walletInFlight.putIfAbsent(walletId, created) == null) {
+                    return created;
+                }
+                continue;
+            }
+            int current = counter.get();
+            if (current == 0) {
+                // последний освободивший ещё не удалил счётчик: удаляем сами и заводим новый
+                walletInFlight.remove(walletId, counter);
+                continue;
+            }
+            if (current >= perWalletLimit) {
+                return null;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return counter;
+            }
+        }
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("wallet.admission.rejected")
+                .description("Balance operations rejected with 429 by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
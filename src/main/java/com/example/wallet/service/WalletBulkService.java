@@ -0,0 +1,228 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.BulkCreateSummaryDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.WalletIds;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Массовое создание кошельков из потока владельцев (CSV — владелец в первой колонке,
+ * NDJSON — {"owner": ...}). Вход читается построчно и пишется пачками по chunk-size строк:
+ * в PostgreSQL через COPY, в остальных БД — JDBC batch. Каждая пачка — своя транзакция;
+ * id пачки отдаются в ответ сразу после её коммита, поэтому память не зависит от размера входа.
+ * <p>
+ * Ответ — NDJSON: {"id": ...} на каждого владельца в порядке входа и итоговая строка
+ * {@link BulkCreateSummaryDTO}. Если строка входа некорректна, обработка останавливается:
+ * все строки до неё сохраняются и отдаются, итоговая строка содержит error.
+ * <p>
+ * При шардировании хранилища пачка делится по шардам и пишется во все шарды параллельно,
+ * по транзакции на шард (части пачки в разных шардах фиксируются независимо).
+ */
+@Service
+public class WalletBulkService {
+    public enum Format { CSV, NDJSON }
+
+    private static final Logger log = LoggerFactory.getLogger(WalletBulkService.class);
+    private static final int MAX_OWNER_LENGTH = 255;
+    private static final String INSERT =
+            "insert into wallets (id, balance, created_at, updated_at, owner, snapshot_seq, held) values (?, 0, ?, ?, ?, 0, 0)";
+    private static final String COPY =
+            "COPY wallets (id, balance, created_at, updated_at, owner, snapshot_seq, held) FROM STDIN WITH (FORMAT csv)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final WalletShards walletShards;
+    private final int chunkSize;
+    private final WalletIds.Version idVersion;
+
+    public WalletBulkService(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             WalletShards walletShards,
+                             @Value("${wallet.bulk.chunk-size:5000}") int chunkSize,
+                             @Value("${wallet.id.version:7}") String idVersion) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.walletShards = walletShards;
+        this.chunkSize = chunkSize;
+        this.idVersion = WalletIds.parseVersion(idVersion);
+    }
+
+    public BulkCreateSummaryDTO create(InputStream in, Format format, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long created = 0;
+        String error = null;
+        List<String> owners = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        long lineNumber = 0;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && line.trim().equalsIgnoreCase("owner"))) {
+                    continue;
+                }
+                String owner = format == Format.CSV ? firstCsvField(line) : ndjsonOwner(line);
+                if (owner == null || owner.isBlank() || owner.length() > MAX_OWNER_LENGTH) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": owner must be 1.." + MAX_OWNER_LENGTH + " characters");
+                }
+                owners.add(owner);
+                if (owners.size() == chunkSize) {
+                    created += flush(owners, out);
+                }
+            }
+            created += flush(owners, out);
+        } catch (IllegalArgumentException ex) {
+            error = ex.getMessage();
+            created += flush(owners, out);
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        BulkCreateSummaryDTO summary = new BulkCreateSummaryDTO(created, Math.round(created / Math.max(seconds, 1e-9)), error);
+        out.write(objectMapper.writeValueAsBytes(summary));
+        out.write('\n');
+        out.flush();
+        log.info("Bulk created {} wallets in {} ms ({} rows/s){}", created, Math.round(seconds * 1000),
+                summary.rowsPerSecond(), error != null ? ", stopped: " + error : "");
+        return summary;
+    }
+
+    private int flush(List<String> owners, OutputStream out) throws IOException {
+        if (owners.isEmpty()) {
+            return 0;
+        }
+        List<UUID> ids = new ArrayList<>(owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            ids.add(WalletIds.next(idVersion));
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (walletShards.count() == 1) {
+            transactionTemplate.executeWithoutResult(status -> insert(ids, owners, now));
+        } else {
+            insertPerShard(ids, owners, now);
+        }
+        StringBuilder response = new StringBuilder(ids.size() * 48);
+        for (UUID id : ids) {
+            response.append("{\"id\":\"").append(id).append("\"}\n");
+        }
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        int inserted = owners.size();
+        owners.clear();
+        return inserted;
+    }
+
+    private void insertPerShard(List<UUID> ids, List<String> owners, Timestamp now) {
+        List<List<UUID>> shardIds = new ArrayList<>(walletShards.count());
+        List<List<String>> shardOwners = new ArrayList<>(walletShards.count());
+        for (int shard = 0; shard < walletShards.count(); shard++) {
+            shardIds.add(new ArrayList<>());
+            shardOwners.add(new ArrayList<>());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            int shard = walletShards.shardOf(ids.get(i));
+            shardIds.get(shard).add(ids.get(i));
+            shardOwners.get(shard).add(owners.get(i));
+        }
+        walletShards.onEachShard(() -> {
+            int shard = WalletShards.current();
+            if (!shardIds.get(shard).isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> insert(shardIds.get(shard), shardOwners.get(shard), now));
+            }
+            return null;
+        });
+    }
+
+    private void insert(List<UUID> ids, List<String> owners, Timestamp now) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class), ids, owners, now);
+                return;
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("COPY into wallets failed", ex);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            rows.add(new Object[]{ids.get(i), now, now, owners.get(i)});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    private static void copy(PGConnection connection, List<UUID> ids, List<String> owners, Timestamp now) throws SQLException {
+        StringBuilder csv = new StringBuilder(ids.size() * 96);
+        for (int i = 0; i < ids.size(); i++) {
+            csv.append(ids.get(i)).append(",0,").append(now).append(',').append(now).append(",\"")
+                    .append(owners.get(i).replace("\"", "\"\"")).append("\",0,0\n");
+        }
+        try {
+            connection.getCopyAPI().copyIn(COPY, new StringReader(csv.toString()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String firstCsvField(String line) {
+        if (!line.startsWith("\"")) {
+            int comma = line.indexOf(',');
+            return (comma < 0 ? line : line.substring(0, comma)).trim();
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    return field.toString();
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return null;
+    }
+
+    private String ndjsonOwner(String line) {
+        try {
+            JsonNode owner = objectMapper.readTree(line).get("owner");
+            return owner != null && owner.isTextual() ? owner.asText() : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}
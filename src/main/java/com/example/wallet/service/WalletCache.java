@@ -0,0 +1,92 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.ReadYourWrites;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Read-through кэш для GET /api/wallets/{id}. Записи инвалидируются после коммита
+ * изменяющей транзакции. Чтобы медленное чтение из БД не положило в кэш значение,
+ * устаревшее к моменту записи, каждая инвалидация увеличивает версию страйпа,
+ * а загруженное значение кладётся в кэш, только если версия не изменилась. Промах читается
+ * с primary, а не с реплики: в кэш попадает только то, что не старше последней инвалидации.
+ * <p>
+ * Кэш локален для экземпляра: изменения с других экземпляров видны не позже ttl-ms.
+ */
+@Component
+public class WalletCache {
+    private static final int STRIPES = 1024;
+
+    private final boolean enabled;
+    private final Cache<UUID, WalletResponseDTO> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    public WalletCache(MeterRegistry meterRegistry,
+                       @Value("${wallet.cache.enabled:true}") boolean enabled,
+                       @Value("${wallet.cache.maximum-size:100000}") long maximumSize,
+                       @Value("${wallet.cache.ttl-ms:5000}") long ttlMs) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "wallets");
+    }
+
+    public WalletResponseDTO get(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        WalletResponseDTO cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        int stripe = stripe(id);
+        long version = versions.get(stripe);
+        // отставшая реплика пережила бы в кэше инвалидацию и отдавалась бы и закреплённым за primary клиентам
+        WalletResponseDTO loaded = ReadYourWrites.onPrimary(() -> loader.apply(id));
+        cache.asMap().compute(id, (key, current) -> versions.get(stripe) == version ? loaded : current);
+        return loaded;
+    }
+
+    /**
+     * Инвалидирует запись после коммита текущей транзакции или сразу, если транзакции нет.
+     */
+    public void invalidateAfterCommit(UUID id) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(id);
+                }
+            });
+        } else {
+            invalidate(id);
+        }
+    }
+
+    private void invalidate(UUID id) {
+        versions.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    private static int stripe(UUID id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletExportRowDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.Wallet;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.SelectionQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Потоковая выгрузка кошельков в NDJSON для сверки. Строки читаются курсором на стороне БД
+ * (fetch-size строк за раз, в PostgreSQL это требует открытой транзакции) через StatelessSession:
+ * сущности не попадают в persistence context, поэтому память не зависит от размера таблицы.
+ * <p>
+ * balance — значение строки wallets на момент snapshotSeq. В режимах sharded и ledger
+ * более свежие операции могут лежать только в журнале wallet_operations с seq больше snapshotSeq.
+ * Эти движки и write-behind не обновляют wallets.updated_at при каждой операции, поэтому фильтр
+ * по updatedAt при них отклоняется: он молча пропускал бы изменённые кошельки.
+ * При шардировании хранилища выгрузка идёт со всех шардов параллельно.
+ */
+@Service
+public class WalletExportService {
+    private static final int FLUSH_EVERY = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final ObjectMapper objectMapper;
+    private final WalletShards walletShards;
+    private final BalanceEngine balanceEngine;
+    private final int fetchSize;
+
+    public WalletExportService(EntityManagerFactory entityManagerFactory,
+                               ObjectMapper objectMapper,
+                               WalletShards walletShards,
+                               BalanceEngine balanceEngine,
+                               @Value("${wallet.export.fetch-size:1000}") int fetchSize) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.objectMapper = objectMapper;
+        this.walletShards = walletShards;
+        this.balanceEngine = balanceEngine;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Пишет в out по одной JSON-строке на кошелёк с updatedAt в [updatedFrom, updatedTo); границы необязательны.
+     * @return количество выгруженных кошельков
+     */
+    public long export(LocalDateTime updatedFrom, LocalDateTime updatedTo, OutputStream out) throws IOException {
+        checkFilter(updatedFrom, updatedTo);
+        StringBuilder hql = new StringBuilder("select w from Wallet w where 1 = 1");
+        if (updatedFrom != null) {
+            hql.append(" and w.updatedAt >= :updatedFrom");
+        }
+        if (updatedTo != null) {
+            hql.append(" and w.updatedAt < :updatedTo");
+        }
+        long exported;
+        try (SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValues(out)) {
+            if (walletShards.count() == 1) {
+                long[] written = new long[1];
+                scan(hql.toString(), updatedFrom, updatedTo, wallet -> {
+                    writer.write(WalletExportRowDTO.from(wallet));
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                });
+                exported = written[0];
+            } else {
+                exported = exportShards(hql.toString(), updatedFrom, updatedTo, writer);
+            }
+        }
+        if (exported > 0) {
+            out.write('\n');
+        }
+        return exported;
+    }
+
+    /**
+     * Фильтр по updatedAt возможен, только если строка wallets обновляется каждой операцией.
+     * Вызывается и до начала потоковой выгрузки, пока ответ ещё можно отклонить с 400.
+     */
+    public void checkFilter(LocalDateTime updatedFrom, LocalDateTime updatedTo) {
+        if ((updatedFrom != null || updatedTo != null) && !balanceEngine.rowIsAuthoritative()) {
+            throw new IllegalArgumentException("updatedFrom/updatedTo are not supported by the configured balance engine");
+        }
+    }
+
+    /**
+     * Шарды читаются параллельно, каждый своим курсором; пачки строк через ограниченную очередь
+     * попадают в writer в порядке готовности, поэтому строки разных шардов перемежаются.
+     */
+    private long exportShards(String hql, LocalDateTime updatedFrom, LocalDateTime updatedTo,
+                              SequenceWriter writer) throws IOException {
+        BlockingQueue<List<WalletExportRowDTO>> chunks = new ArrayBlockingQueue<>(walletShards.count() * 2);
+        List<Future<Long>> shards = walletShards.submitOnEachShard(() -> {
+            ShardReader reader = new ShardReader(chunks);
+            try {
+                return scan(hql, updatedFrom, updatedTo, reader);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                reader.finish();
+            }
+        });
+        long exported = 0;
+        try {
+            int running = shards.size();
+            while (running > 0) {
+                List<WalletExportRowDTO> chunk = chunks.take();
+                if (chunk.isEmpty()) {
+                    running--;
+                    continue;
+                }
+                for (WalletExportRowDTO row : chunk) {
+                    writer.write(row);
+                }
+                writer.flush();
+                exported += chunk.size();
+            }
+            for (Future<Long> shard : shards) {
+                shard.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard export failed", ex.getCause());
+        } finally {
+            // клиент ушёл или шард упал: остальные курсоры закрываются
+            shards.forEach(shard -> shard.cancel(true));
+        }
+        return exported;
+    }
+
+    private long scan(String hql, LocalDateTime updatedFrom, LocalDateTime updatedTo, RowSink sink) throws IOException {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // Hikari сбрасывает readOnly при возврате соединения в пул
+            session.doWork(connection -> connection.setReadOnly(true));
+            Transaction transaction = session.beginTransaction();
+            try {
+                SelectionQuery<Wallet> query = session.createSelectionQuery(hql, Wallet.class)
+                        .setFetchSize(fetchSize)
+                        .setReadOnly(true);
+                if (updatedFrom != null) {
+                    query.setParameter("updatedFrom", updatedFrom);
+                }
+                if (updatedTo != null) {
+                    query.setParameter("updatedTo", updatedTo);
+                }
+                long scanned = 0;
+                try (ScrollableResults<Wallet> rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                    while (rows.next()) {
+                        sink.accept(rows.get());
+                        scanned++;
+                    }
+                }
+                transaction.commit();
+                return scanned;
+            } catch (IOException | RuntimeException ex) {
+                transaction.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSink {
+        void accept(Wallet wallet) throws IOException;
+    }
+
+    /**
+     * Копит строки шарда пачками по FLUSH_EVERY; пустая пачка в очереди — шард дочитан.
+     */
+    private static final class ShardReader implements RowSink {
+        private final BlockingQueue<List<WalletExportRowDTO>> chunks;
+        private List<WalletExportRowDTO> chunk = new ArrayList<>(FLUSH_EVERY);
+
+        private ShardReader(BlockingQueue<List<WalletExportRowDTO>> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void accept(Wallet wallet) throws IOException {
+            chunk.add(WalletExportRowDTO.from(wallet));
+            if (chunk.size() == FLUSH_EVERY) {
+                put(chunk);
+                chunk = new ArrayList<>(FLUSH_EVERY);
+            }
+        }
+
+        private void finish() {
+            try {
+                if (!chunk.isEmpty()) {
+                    put(chunk);
+                }
+                put(List.of());
+            } catch (IOException ex) {
+                // выгрузку отменили, читать пачки некому
+            }
+        }
+
+        private void put(List<WalletExportRowDTO> rows) throws IOException {
+            try {
+                chunks.put(rows);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export cancelled");
+            }
+        }
+    }
+}
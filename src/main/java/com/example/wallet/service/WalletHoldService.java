@@ -0,0 +1,329 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.LedgerEntryType;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletHold;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletHoldRepository;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Холды: HOLD резервирует сумму в wallets.held и создаёт строку wallet_holds, CAPTURE списывает
+ * зарезервированное, RELEASE снимает резерв. Каждая операция блокирует строку кошелька, затем читает холд;
+ * истечение блокирует в том же порядке, поэтому capture и истечение одного холда не пересекаются.
+ * <p>
+ * Истечение — {@link HoldTimingWheel}: истёкшие за тик холды снимаются пачками по expiry-batch-size
+ * (одна транзакция на пачку в шарде). Холды переживают рестарт: при старте колесо заполняется
+ * из wallet_holds, просроченные за время простоя снимаются первым тиком.
+ */
+@Service
+public class WalletHoldService implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(WalletHoldService.class);
+    private static final int LOAD_PAGE_SIZE = 10_000;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final WalletRepository walletRepository;
+    private final WalletHoldRepository walletHoldRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final WalletOutbox walletOutbox;
+    private final WalletCache walletCache;
+    private final WalletSubscriptions walletSubscriptions;
+    private final WalletMetrics walletMetrics;
+    private final BalanceEngine balanceEngine;
+    private final WalletShards walletShards;
+    private final TransactionTemplate transactionTemplate;
+    private final long defaultTtlSeconds;
+    private final long maxTtlSeconds;
+    private final int expiryBatchSize;
+    private final HoldTimingWheel wheel;
+    private final Counter expired;
+
+    public WalletHoldService(WalletRepository walletRepository,
+                             WalletHoldRepository walletHoldRepository,
+                             WalletOperationRepository walletOperationRepository,
+                             WalletOutbox walletOutbox,
+                             WalletCache walletCache,
+                             WalletSubscriptions walletSubscriptions,
+                             WalletMetrics walletMetrics,
+                             BalanceEngine balanceEngine,
+                             WalletShards walletShards,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${wallet.holds.default-ttl-seconds:604800}") long defaultTtlSeconds,
+                             @Value("${wallet.holds.max-ttl-seconds:2592000}") long maxTtlSeconds,
+                             @Value("${wallet.holds.tick-ms:1000}") long tickMs,
+                             @Value("${wallet.holds.wheel-size:3600}") int wheelSize,
+                             @Value("${wallet.holds.expiry-batch-size:500}") int expiryBatchSize) {
+        this.walletRepository = walletRepository;
+        this.walletHoldRepository = walletHoldRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.walletOutbox = walletOutbox;
+        this.walletCache = walletCache;
+        this.walletSubscriptions = walletSubscriptions;
+        this.walletMetrics = walletMetrics;
+        this.balanceEngine = balanceEngine;
+        this.walletShards = walletShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.expiryBatchSize = expiryBatchSize;
+        this.wheel = new HoldTimingWheel(tickMs, wheelSize, this::expire);
+        Gauge.builder("wallet.holds.scheduled", wheel, HoldTimingWheel::size)
+                .description("Holds waiting in the expiry timing wheel, including already finished ones")
+                .register(meterRegistry);
+        this.expired = Counter.builder("wallet.holds.expired")
+                .description("Holds released on expiry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загружает активные холды всех шардов в колесо.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Long> loaded = walletShards.onEachShard(this::loadShard);
+        long total = loaded.stream().mapToLong(Long::longValue).sum();
+        if (total > 0) {
+            log.info("Scheduled expiry of {} active holds", total);
+        }
+    }
+
+    /**
+     * HOLD, CAPTURE или RELEASE; вызывается внутри {@link BalanceEngine#exclusive} на шарде кошелька.
+     * Нехватка средств, отсутствие кошелька или холда — результат, неверный запрос — IllegalArgumentException.
+     * Кэш и подписчики сбрасываются после коммита при любом изменении строки, в том числе когда
+     * CAPTURE снимает истёкший холд и отвечает NOT_FOUND.
+     */
+    public OperationResult<WalletResponseDTO> apply(UUID walletId, WalletOperationRequestDTO dto) {
+        if (!balanceEngine.supportsHolds()) {
+            throw new IllegalArgumentException("Holds are not supported by the configured balance engine");
+        }
+        UUID holdId = dto.getHoldId();
+        if (holdId == null) {
+            throw new IllegalArgumentException("holdId is required for " + dto.getOperationType());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        WalletHold[] created = new WalletHold[1];
+        OperationResult<WalletResponseDTO> result = transactionTemplate.execute(status -> {
+            Wallet wallet = walletMetrics.recordLockWait("hold", () -> walletRepository.findByIdForUpdate(walletId))
+                    .orElse(null);
+            if (wallet == null) {
+                return OperationResult.notFound();
+            }
+            WalletHold hold = walletHoldRepository.findById(holdId).orElse(null);
+            if (hold != null && !hold.getWalletId().equals(walletId)) {
+                throw new IllegalArgumentException("Hold " + holdId + " belongs to another wallet");
+            }
+            return switch (dto.getOperationType()) {
+                case HOLD -> hold(wallet, hold, holdId, dto, now, created);
+                case CAPTURE -> capture(wallet, hold, dto.getAmount(), now);
+                case RELEASE -> hold != null ? release(wallet, hold) : OperationResult.notFound();
+                default -> throw new IllegalArgumentException(dto.getOperationType() + " is not a hold operation");
+            };
+        });
+        if (created[0] != null) {
+            wheel.schedule(created[0].getId(), walletId, epochMillis(created[0].getExpiresAt()));
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет холды кошелька вместе с ним; записи в колесе снимутся вхолостую.
+     */
+    public void deleteHolds(UUID walletId) {
+        walletHoldRepository.deleteByWalletId(walletId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.close();
+    }
+
+    private OperationResult<WalletResponseDTO> hold(Wallet wallet, WalletHold existing, UUID holdId,
+                                                    WalletOperationRequestDTO dto, LocalDateTime now,
+                                                    WalletHold[] created) {
+        if (existing != null) {
+            // повтор того же HOLD: резерв уже сделан
+            return OperationResult.success(WalletResponseDTO.from(wallet));
+        }
+        Money amount = dto.getAmount();
+        if (amount.signum() == 0) {
+            throw new IllegalArgumentException("Hold amount must be positive");
+        }
+        long ttl = dto.getTtlSeconds() != null ? dto.getTtlSeconds() : defaultTtlSeconds;
+        if (ttl < 1 || ttl > maxTtlSeconds) {
+            throw new IllegalArgumentException("ttlSeconds must be 1.." + maxTtlSeconds);
+        }
+        if (wallet.getAvailable().isLessThan(amount)) {
+            return OperationResult.insufficientFunds();
+        }
+        wallet.setHeld(wallet.getHeld().plus(amount));
+        created[0] = walletHoldRepository.save(new WalletHold(holdId, wallet.getId(), amount, now, now.plusSeconds(ttl)));
+        return OperationResult.success(changed(walletRepository.save(wallet)));
+    }
+
+    /**
+     * Списывает amount (0 — весь холд) из зарезервированного, остаток резерва снимается.
+     * Истёкший, но ещё не снятый колесом холд снимается здесь же и считается отсутствующим.
+     */
+    private OperationResult<WalletResponseDTO> capture(Wallet wallet, WalletHold hold, Money amount, LocalDateTime now) {
+        if (hold == null) {
+            return OperationResult.notFound();
+        }
+        if (!hold.getExpiresAt().isAfter(now)) {
+            release(wallet, hold);
+            return OperationResult.notFound();
+        }
+        Money captured = amount.signum() == 0 ? hold.getAmount() : amount;
+        if (hold.getAmount().isLessThan(captured)) {
+            throw new IllegalArgumentException("Capture amount exceeds hold " + hold.getId());
+        }
+        long seq = wallet.getSnapshotSeq() + 1;
+        Money balance = wallet.getBalance().minus(captured);
+        walletOperationRepository.save(new WalletOperation(wallet.getId(), seq, LedgerEntryType.CAPTURE,
+                captured.negate(), now));
+        walletOutbox.balanceChanged(wallet.getId(), balance, seq, now);
+        wallet.setBalance(balance);
+        wallet.setSnapshotSeq(seq);
+        wallet.setHeld(wallet.getHeld().minus(hold.getAmount()));
+        walletHoldRepository.delete(hold);
+        return OperationResult.success(changed(walletRepository.save(wallet)));
+    }
+
+    private OperationResult<WalletResponseDTO> release(Wallet wallet, WalletHold hold) {
+        wallet.setHeld(wallet.getHeld().minus(hold.getAmount()));
+        walletHoldRepository.delete(hold);
+        return OperationResult.success(changed(walletRepository.save(wallet)));
+    }
+
+    /**
+     * Регистрирует сброс кэша и сигнал подписчикам на коммит текущей транзакции.
+     */
+    private WalletResponseDTO changed(Wallet wallet) {
+        walletCache.invalidateAfterCommit(wallet.getId());
+        walletSubscriptions.changedAfterCommit(wallet.getId());
+        return WalletResponseDTO.from(wallet);
+    }
+
+    private long loadShard() {
+        long loaded = 0;
+        UUID after = new UUID(0, 0);
+        List<WalletHold> page;
+        do {
+            page = walletHoldRepository.findPageAfter(after, PageRequest.ofSize(LOAD_PAGE_SIZE));
+            for (WalletHold hold : page) {
+                wheel.schedule(hold.getId(), hold.getWalletId(), epochMillis(hold.getExpiresAt()));
+                after = hold.getId();
+            }
+            loaded += page.size();
+        } while (page.size() == LOAD_PAGE_SIZE);
+        return loaded;
+    }
+
+    /**
+     * Sink колеса: пачки по шардам, транзакция на пачку. Неснятые из-за сбоя холды возвращаются в колесо.
+     */
+    private void expire(List<HoldTimingWheel.Expired> due) {
+        Map<Integer, List<HoldTimingWheel.Expired>> byShard = new HashMap<>();
+        for (HoldTimingWheel.Expired hold : due) {
+            byShard.computeIfAbsent(walletShards.shardOf(hold.walletId()), shard -> new ArrayList<>()).add(hold);
+        }
+        for (Map.Entry<Integer, List<HoldTimingWheel.Expired>> shard : byShard.entrySet()) {
+            List<HoldTimingWheel.Expired> holds = shard.getValue();
+            for (int from = 0; from < holds.size(); from += expiryBatchSize) {
+                List<HoldTimingWheel.Expired> chunk = holds.subList(from, Math.min(from + expiryBatchSize, holds.size()));
+                try {
+                    Set<UUID> wallets = walletShards.onShard(shard.getKey(), () -> transactionTemplate.execute(
+                            status -> expireChunk(chunk, LocalDateTime.now())));
+                    evict(wallets);
+                } catch (RuntimeException ex) {
+                    log.error("Failed to expire {} holds, retrying in {} ms", chunk.size(), RETRY_DELAY_MS, ex);
+                    long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+                    chunk.forEach(hold -> wheel.schedule(hold.holdId(), hold.walletId(), retryAt));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return кошельки, у которых сняты холды
+     */
+    private Set<UUID> expireChunk(List<HoldTimingWheel.Expired> chunk, LocalDateTime now) {
+        Set<UUID> walletIds = new LinkedHashSet<>();
+        List<UUID> holdIds = new ArrayList<>(chunk.size());
+        for (HoldTimingWheel.Expired hold : chunk) {
+            walletIds.add(hold.walletId());
+            holdIds.add(hold.holdId());
+        }
+        // блокировки в порядке id, как у пакетных операций, затем холды: capture не снимет тот же холд
+        Map<UUID, Wallet> wallets = new LinkedHashMap<>();
+        for (Wallet wallet : walletMetrics.recordLockWait("hold_expiry", () -> walletRepository.findAllByIdForUpdate(walletIds))) {
+            wallets.put(wallet.getId(), wallet);
+        }
+        List<WalletHold> released = new ArrayList<>();
+        Set<UUID> changed = new LinkedHashSet<>();
+        for (WalletHold hold : walletHoldRepository.findAllById(holdIds)) {
+            if (hold.getExpiresAt().isAfter(now)) {
+                // часы колеса чуть впереди: холд вернётся в колесо к своему сроку
+                wheel.schedule(hold.getId(), hold.getWalletId(), epochMillis(hold.getExpiresAt()));
+                continue;
+            }
+            Wallet wallet = wallets.get(hold.getWalletId());
+            if (wallet != null) {
+                wallet.setHeld(wallet.getHeld().minus(hold.getAmount()));
+                changed.add(wallet.getId());
+            }
+            released.add(hold);
+        }
+        walletHoldRepository.deleteAllInBatch(released);
+        for (UUID id : changed) {
+            walletCache.invalidateAfterCommit(id);
+            walletSubscriptions.changedAfterCommit(id);
+        }
+        expired.increment(released.size());
+        return changed;
+    }
+
+    private void evict(Set<UUID> wallets) {
+        if (balanceEngine.rowIsAuthoritative()) {
+            return;
+        }
+        // движки с состоянием в памяти перечитают held из строки
+        for (UUID id : wallets) {
+            walletShards.on(id, () -> balanceEngine.exclusive(id, () -> null));
+        }
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
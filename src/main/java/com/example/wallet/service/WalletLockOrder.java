@@ -0,0 +1,19 @@
+package com.example.wallet.service;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Единый порядок захвата блокировок строк wallets. Совпадает с порядком uuid в PostgreSQL
+ * (побайтовое беззнаковое сравнение), поэтому "order by id" в запросе и сортировка в Java
+ * дают одну и ту же последовательность.
+ */
+public final class WalletLockOrder {
+    public static final Comparator<UUID> COMPARATOR = (a, b) -> {
+        int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private WalletLockOrder() {
+    }
+}
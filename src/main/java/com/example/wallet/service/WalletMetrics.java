@@ -0,0 +1,130 @@
+package com.example.wallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики операций с кошельками:
+ * <ul>
+ *     <li>wallet.operation — таймер с гистограммой по operation и outcome
+ *     (success, insufficient_funds, not_found, error);</li>
+ *     <li>wallet.rejections — счётчик отказов по reason и operation;</li>
+ *     <li>wallet.row_lock.wait — время захвата блокировки строк кошельков по path.</li>
+ * </ul>
+ * Тег wallet включается wallet.metrics.wallet-tags.enabled и ограничен max-wallets первыми
+ * встреченными кошельками, остальные попадают в wallet=other. Пул соединений публикует
+ * hikaricp.connections.* сам, HTTP-таймеры — http.server.requests.
+ */
+@Component
+public class WalletMetrics {
+    public static final String SUCCESS = "success";
+    public static final String INSUFFICIENT_FUNDS = "insufficient_funds";
+    public static final String NOT_FOUND = "not_found";
+    public static final String ERROR = "error";
+    private static final String OTHER_WALLET = "other";
+
+    private final MeterRegistry registry;
+    private final boolean walletTags;
+    private final int maxWallets;
+    private final Set<String> taggedWallets = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Timer> lockTimers = new ConcurrentHashMap<>();
+    // метры создаются один раз на ключ: builder с гистограммой на каждую операцию дорог
+    private final ConcurrentHashMap<MeterKey, OperationMeters> operationMeters = new ConcurrentHashMap<>();
+
+    public WalletMetrics(MeterRegistry registry,
+                         @Value("${wallet.metrics.wallet-tags.enabled:false}") boolean walletTags,
+                         @Value("${wallet.metrics.wallet-tags.max-wallets:100}") int maxWallets) {
+        this.registry = registry;
+        this.walletTags = walletTags;
+        this.maxWallets = maxWallets;
+    }
+
+    /**
+     * Выполняет операцию, записывая её длительность с исходом; отказы дополнительно считаются в wallet.rejections.
+     */
+    public <T> OperationResult<T> recordOperation(String operation, UUID walletId, Supplier<OperationResult<T>> action) {
+        long start = registry.config().clock().monotonicTime();
+        String outcome = ERROR;
+        try {
+            OperationResult<T> result = action.get();
+            outcome = switch (result.status()) {
+                case SUCCESS -> SUCCESS;
+                case INSUFFICIENT_FUNDS -> INSUFFICIENT_FUNDS;
+                case NOT_FOUND -> NOT_FOUND;
+            };
+            return result;
+        } finally {
+            record(operation, walletId, outcome, registry.config().clock().monotonicTime() - start);
+        }
+    }
+
+    public void record(String operation, UUID walletId, String outcome, long durationNanos) {
+        String wallet = walletTags ? walletTag(walletId) : null;
+        OperationMeters meters = operationMeters.computeIfAbsent(new MeterKey(operation, outcome, wallet), this::register);
+        meters.timer.record(durationNanos, TimeUnit.NANOSECONDS);
+        if (meters.rejections != null) {
+            meters.rejections.increment();
+        }
+    }
+
+    /**
+     * Измеряет ожидание блокировки строк: запрос, который захватывает строку (SELECT ... FOR UPDATE
+     * или условный UPDATE), ждёт, пока конкурирующая транзакция её отпустит.
+     */
+    public <T> T recordLockWait(String path, Supplier<T> action) {
+        Timer timer = lockTimers.computeIfAbsent(path, key -> Timer.builder("wallet.row_lock.wait")
+                .description("Time spent acquiring wallet row locks")
+                .tag("path", key)
+                .publishPercentileHistogram()
+                .register(registry));
+        return timer.record(action);
+    }
+
+    private OperationMeters register(MeterKey key) {
+        Tags tags = Tags.of("operation", key.operation, "outcome", key.outcome);
+        if (key.wallet != null) {
+            tags = tags.and("wallet", key.wallet);
+        }
+        Timer timer = Timer.builder("wallet.operation")
+                .description("Wallet operation latency by operation and outcome")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+        Counter rejections = null;
+        if (INSUFFICIENT_FUNDS.equals(key.outcome) || NOT_FOUND.equals(key.outcome)) {
+            rejections = Counter.builder("wallet.rejections")
+                    .description("Operations rejected for insufficient funds or a missing wallet")
+                    .tags(tags.and("reason", key.outcome))
+                    .register(registry);
+        }
+        return new OperationMeters(timer, rejections);
+    }
+
+    private String walletTag(UUID walletId) {
+        if (walletId == null) {
+            return OTHER_WALLET;
+        }
+        String id = walletId.toString();
+        if (taggedWallets.contains(id) || (taggedWallets.size() < maxWallets && taggedWallets.add(id))) {
+            return id;
+        }
+        return OTHER_WALLET;
+    }
+
+    // wallet == null, когда тег кошелька выключен; число ключей ограничено операциями, исходами и max-wallets
+    private record MeterKey(String operation, String outcome, String wallet) {
+    }
+
+    private record OperationMeters(Timer timer, Counter rejections) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OutboxEvent;
+import com.example.wallet.repository.OutboxEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запись событий в outbox. Вызывается только внутри транзакции изменения (MANDATORY): событие
+ * фиксируется или откатывается вместе с балансом. Движки, пишущие пачками (group-commit, sharded,
+ * пакетные операции), кладут одно событие на кошелёк с итоговым состоянием пачки.
+ */
+@Component
+public class WalletOutbox {
+    private final OutboxEventRepository repository;
+
+    public WalletOutbox(OutboxEventRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void balanceChanged(UUID walletId, Money balance, long seq, LocalDateTime now) {
+        repository.save(OutboxEvent.balanceChanged(walletId, balance, seq, now));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void balanceChanged(List<OutboxEvent> events) {
+        repository.saveAll(events);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleted(UUID walletId) {
+        repository.save(OutboxEvent.deleted(walletId, LocalDateTime.now()));
+    }
+}
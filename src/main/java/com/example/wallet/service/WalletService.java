@@ -1,76 +1,277 @@
 package com.example.wallet.service;
 
+import com.example.wallet.DTO.TransferRequestDTO;
+import com.example.wallet.DTO.TransferResponseDTO;
 import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletPageDTO;
 import com.example.wallet.DTO.WalletRequestDTO;
 import com.example.wallet.DTO.WalletResponseDTO;
 import com.example.wallet.DTO.WalletUpdateRequestDTO;
+import com.example.wallet.config.WalletShards;
 import com.example.wallet.exception.WalletNotFoundException;
 import com.example.wallet.model.*;
+import com.example.wallet.repository.LedgerTail;
+import com.example.wallet.repository.WalletOperationRepository;
 import com.example.wallet.repository.WalletRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 @Service
 public class WalletService {
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
     private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final BalanceEngine balanceEngine;
+    private final WalletCache walletCache;
+    private final WalletMetrics walletMetrics;
+    private final WalletOutbox walletOutbox;
+    private final WalletSubscriptions walletSubscriptions;
+    private final WalletShards walletShards;
+    private final WalletHoldService walletHoldService;
+    // exclusive у движков с шардами выполняет действие в потоке шарда: транзакция открывается внутри действия
+    private final TransactionTemplate transactionTemplate;
+    private final int maxPageSize;
+    private final WalletIds.Version idVersion;
+    private final int maxRetries;
 
-    public WalletService(WalletRepository walletRepository) {
+    public WalletService(WalletRepository walletRepository, WalletOperationRepository walletOperationRepository,
+                         BalanceEngine balanceEngine, WalletCache walletCache, WalletMetrics walletMetrics,
+                         WalletOutbox walletOutbox, WalletSubscriptions walletSubscriptions, WalletShards walletShards,
+                         WalletHoldService walletHoldService, PlatformTransactionManager transactionManager,
+                         @Value("${wallet.list.max-page-size:1000}") int maxPageSize,
+                         @Value("${wallet.id.version:7}") String idVersion,
+                         @Value("${wallet.ledger.max-retries:100}") int maxRetries) {
         this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.balanceEngine = balanceEngine;
+        this.walletCache = walletCache;
+        this.walletMetrics = walletMetrics;
+        this.walletOutbox = walletOutbox;
+        this.walletSubscriptions = walletSubscriptions;
+        this.walletShards = walletShards;
+        this.walletHoldService = walletHoldService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPageSize = maxPageSize;
+        this.idVersion = WalletIds.parseVersion(idVersion);
+        this.maxRetries = maxRetries;
     }
 
     public WalletResponseDTO createWallet(WalletRequestDTO dto) {
+        // id назначается заранее: по нему выбирается шард
+        UUID id = WalletIds.next(idVersion);
         Wallet wallet = new Wallet();
+        wallet.setId(id);
         wallet.setOwner(dto.owner());
-        wallet.setBalance(BigDecimal.ZERO);
-        Wallet saved = walletRepository.save(wallet);
-        return new WalletResponseDTO(saved.getId(), saved.getOwner(), saved.getBalance());
+        wallet.setBalance(Money.ZERO);
+        Wallet saved = walletShards.on(id, () -> walletRepository.save(wallet));
+        return WalletResponseDTO.from(saved);
     }
-    public WalletResponseDTO getWalletById(UUID id) {
-        Wallet wallet = walletRepository.findById(id)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet with id " + id + " not found"));
-        return new WalletResponseDTO(wallet.getId(), wallet.getOwner(), wallet.getBalance());
+    public OperationResult<WalletResponseDTO> getWalletById(UUID id) {
+        return walletMetrics.recordOperation("READ", id,
+                () -> OperationResult.foundOrNot(balanceEngine.read(id, this::loadWallet)));
+    }
+
+    /**
+     * SSE-поток состояния кошелька: текущее состояние сразу, затем после каждого изменения.
+     * При успехе ответ уже переведён в асинхронный режим и пишется подпиской.
+     */
+    public OperationResult<Void> subscribe(UUID id, HttpServletRequest request, HttpServletResponse response) {
+        return walletSubscriptions.subscribe(id, request, response, this::currentState)
+                ? OperationResult.success(null)
+                : OperationResult.notFound();
+    }
+
+    /**
+     * Страница кошельков (при owner — только его) с id строго больше after, по возрастанию id.
+     * При шардировании страница запрашивается у всех шардов параллельно и сливается.
+     */
+    @Transactional(readOnly = true)
+    public WalletPageDTO listWallets(String owner, UUID after, int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be 1.." + maxPageSize);
+        }
+        UUID from = after != null ? after : FIRST_ID;
+        Pageable page = PageRequest.ofSize(limit);
+        List<List<Wallet>> pages = walletShards.onEachShard(() -> owner != null
+                ? walletRepository.findPageByOwnerAfter(owner, from, page)
+                : walletRepository.findPageAfter(from, page));
+        List<Wallet> wallets = firstOfMerged(pages, limit);
+        List<WalletResponseDTO> items = new ArrayList<>(wallets.size());
+        for (Wallet wallet : wallets) {
+            WalletResponseDTO row = WalletResponseDTO.from(wallet);
+            // у in-memory и ledger движков баланс в строке может отставать
+            items.add(balanceEngine.rowIsAuthoritative() ? row : balanceEngine.read(wallet.getId(), id -> row));
+        }
+        UUID nextAfter = wallets.size() == limit ? wallets.get(wallets.size() - 1).getId() : null;
+        return new WalletPageDTO(items, nextAfter);
+    }
+
+    /**
+     * Выставляет баланс записью ADJUSTMENT. Seq и разница считаются от снапшота с хвостом журнала:
+     * в режиме ledger операции дописываются без блокировки строки, и гонка за seq решается повтором, как в движке.
+     */
+    public Wallet updateBalance(UUID id, Money newBalance) {
+        return walletShards.on(id, () -> balanceEngine.exclusive(id, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> adjustBalance(id, newBalance));
+                } catch (DataIntegrityViolationException ex) {
+                    // конкурентная операция журнала заняла этот seq
+                    if (attempt >= maxRetries) {
+                        throw new OptimisticLockingFailureException("Too much contention on wallet " + id, ex);
+                    }
+                }
+            }
+        }));
     }
 
-    public Wallet updateBalance(UUID id, BigDecimal newBalance) {
-        Wallet wallet = walletRepository.findById(id)
+    private Wallet adjustBalance(UUID id, Money newBalance) {
+        walletCache.invalidateAfterCommit(id);
+        walletSubscriptions.changedAfterCommit(id);
+        // блокировка до записи в outbox: id события должен идти после событий конкурентов
+        Wallet wallet = walletRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new WalletNotFoundException("Wallet with id " + id + " not found"));
+        LedgerTail tail = walletOperationRepository.tail(id, wallet.getSnapshotSeq());
+        long seq = tail.lastSeq() + 1;
+        LocalDateTime now = LocalDateTime.now();
+        walletOperationRepository.saveAndFlush(new WalletOperation(id, seq, LedgerEntryType.ADJUSTMENT,
+                newBalance.minus(wallet.getBalance().plus(tail.delta())), now));
+        walletOutbox.balanceChanged(id, newBalance, seq, now);
         wallet.setBalance(newBalance);
+        wallet.setSnapshotSeq(seq);
         return walletRepository.save(wallet);
     }
 
-    public WalletResponseDTO changeBalance(UUID id, WalletOperationRequestDTO dto) {
-        Wallet wallet = walletRepository.findById(id)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet with id " + id + " not found"));
-        BigDecimal newBalance;
-        if (dto.getOperationType() == OperationType.DEPOSIT) {
-            newBalance = wallet.getBalance().add(dto.getAmount());
-        }else {
-            if (wallet.getBalance().compareTo(dto.getAmount()) < 0) {
-                throw new RuntimeException("Insufficient funds");
-            }
-            newBalance = wallet.getBalance().subtract(dto.getAmount());
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        OperationResult<WalletResponseDTO> result = walletMetrics.recordOperation(dto.getOperationType().name(), id,
+                () -> walletShards.on(id, () -> dto.getOperationType().isHoldOperation()
+                        ? balanceEngine.exclusive(id, () -> walletHoldService.apply(id, dto))
+                        : balanceEngine.changeBalance(id, dto)));
+        // холды сбрасывают кэш сами, в своей транзакции: CAPTURE истёкшего холда меняет строку, но отвечает NOT_FOUND
+        if (result.isSuccess() && !dto.getOperationType().isHoldOperation()) {
+            walletCache.invalidateAfterCommit(id);
+            walletSubscriptions.changedAfterCommit(id);
         }
-        wallet.setBalance(newBalance);
-        Wallet updated = walletRepository.save(wallet);
-        return new WalletResponseDTO(updated.getId(), updated.getOwner(), updated.getBalance());
+        return result;
     }
 
-    @Transactional
     public WalletResponseDTO updateWallet(UUID id, WalletUpdateRequestDTO updateRequest) {
-        Wallet wallet = walletRepository.findById(id)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet with id " + id + " not found"));
-        wallet.setOwner(updateRequest.getOwner());
-        Wallet updated = walletRepository.save(wallet);
-        return new WalletResponseDTO(updated.getId(), updated.getOwner(), updated.getBalance());
+        return walletShards.on(id, () -> balanceEngine.exclusive(id, () -> transactionTemplate.execute(status -> {
+            walletCache.invalidateAfterCommit(id);
+            walletSubscriptions.changedAfterCommit(id);
+            Wallet wallet = walletRepository.findById(id)
+                    .orElseThrow(() -> new WalletNotFoundException("Wallet with id " + id + " not found"));
+            wallet.setOwner(updateRequest.getOwner());
+            Wallet updated = walletRepository.save(wallet);
+            return WalletResponseDTO.from(updated);
+        })));
     }
+
+    public OperationResult<Void> deleteWallet(UUID id) {
+        return walletShards.on(id, () -> balanceEngine.exclusive(id, () -> transactionTemplate.execute(status -> {
+            if (!walletRepository.existsById(id)) {
+                return OperationResult.<Void>notFound();
+            }
+            walletCache.invalidateAfterCommit(id);
+            walletSubscriptions.changedAfterCommit(id);
+            walletHoldService.deleteHolds(id);
+            walletRepository.deleteById(id);
+            walletOutbox.deleted(id);
+            return OperationResult.<Void>success(null);
+        })));
+    }
+
+    /**
+     * Перевод между кошельками одной транзакцией. Обе строки блокируются в порядке
+     * {@link WalletLockOrder}, поэтому встречные переводы A→B и B→A не взаимоблокируются.
+     * При шардировании оба кошелька должны лежать в одном шарде.
+     */
     @Transactional
-    public void deleteWallet(UUID id) {
-        if (!walletRepository.existsById(id)) {
-            throw new RuntimeException("Wallet not found");
+    public OperationResult<TransferResponseDTO> transfer(TransferRequestDTO dto) {
+        return walletMetrics.recordOperation("TRANSFER", dto.fromWalletId(),
+                () -> walletShards.on(dto.fromWalletId(), () -> doTransfer(dto)));
+    }
+
+    private OperationResult<TransferResponseDTO> doTransfer(TransferRequestDTO dto) {
+        UUID fromId = dto.fromWalletId();
+        UUID toId = dto.toWalletId();
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same wallet");
+        }
+        if (!balanceEngine.rowIsAuthoritative()) {
+            throw new IllegalArgumentException("Transfers are not supported by the configured balance engine");
+        }
+        if (walletShards.shardOf(fromId) != walletShards.shardOf(toId)) {
+            throw new IllegalArgumentException("Transfers between wallets on different shards are not supported");
+        }
+        Map<UUID, Wallet> locked = new HashMap<>(4);
+        walletMetrics.recordLockWait("transfer", () -> walletRepository.findAllByIdForUpdate(List.of(fromId, toId)))
+                .forEach(wallet -> locked.put(wallet.getId(), wallet));
+        Wallet from = locked.get(fromId);
+        Wallet to = locked.get(toId);
+        if (from == null || to == null) {
+            return OperationResult.notFound();
+        }
+        if (from.getAvailable().isLessThan(dto.amount())) {
+            return OperationResult.insufficientFunds();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        from.setBalance(from.getBalance().minus(dto.amount()));
+        from.setSnapshotSeq(from.getSnapshotSeq() + 1);
+        to.setBalance(to.getBalance().plus(dto.amount()));
+        to.setSnapshotSeq(to.getSnapshotSeq() + 1);
+        walletOperationRepository.saveAll(List.of(
+                new WalletOperation(fromId, from.getSnapshotSeq(), LedgerEntryType.TRANSFER_OUT, dto.amount().negate(), now),
+                new WalletOperation(toId, to.getSnapshotSeq(), LedgerEntryType.TRANSFER_IN, dto.amount(), now)));
+        walletOutbox.balanceChanged(List.of(
+                OutboxEvent.balanceChanged(fromId, from.getBalance(), from.getSnapshotSeq(), now),
+                OutboxEvent.balanceChanged(toId, to.getBalance(), to.getSnapshotSeq(), now)));
+        walletCache.invalidateAfterCommit(fromId);
+        walletCache.invalidateAfterCommit(toId);
+        walletSubscriptions.changedAfterCommit(fromId);
+        walletSubscriptions.changedAfterCommit(toId);
+        return OperationResult.success(new TransferResponseDTO(
+                WalletResponseDTO.from(from),
+                WalletResponseDTO.from(to)));
+    }
+
+    private WalletResponseDTO currentState(UUID id) {
+        return balanceEngine.read(id, this::loadWallet);
+    }
+
+    private WalletResponseDTO loadWallet(UUID id) {
+        return walletCache.get(id, this::findWallet);
+    }
+
+    private WalletResponseDTO findWallet(UUID id) {
+        return walletShards.on(id, () -> walletRepository.findById(id).map(WalletResponseDTO::from).orElse(null));
+    }
+
+    private static List<Wallet> firstOfMerged(List<List<Wallet>> pages, int limit) {
+        if (pages.size() == 1) {
+            return pages.get(0);
         }
-        walletRepository.deleteById(id);
+        List<Wallet> merged = new ArrayList<>();
+        pages.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Wallet::getId, WalletLockOrder.COMPARATOR));
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
     }
 
 }
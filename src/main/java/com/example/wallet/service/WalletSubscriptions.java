@@ -0,0 +1,381 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.ReadYourWrites;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * SSE-подписки на состояние кошелька (GET /api/wallets/{id}/events).
+ * <p>
+ * Методы изменения сервиса после коммита вызывают {@link #changedAfterCommit}: это только сигнал,
+ * без состояния и без работы, если у кошелька нет подписчиков. По сигналу текущее состояние
+ * перечитывается один раз на всех подписчиков кошелька (подряд идущие сигналы схлопываются),
+ * поэтому порядок коммитов не важен — подписчик всегда получает последнее состояние.
+ * <p>
+ * Ответ пишется неблокирующим вводом-выводом сервлета (WriteListener): запись идёт, пока сокет
+ * принимает данные, остальное дописывается по onWritePossible, поток не ждёт ни одного клиента.
+ * У каждого подписчика хранится только последнее неотправленное состояние. Подписчик, который
+ * не принимает данные дольше slow-subscriber-ms, отключается закрытием ответа. Раз в heartbeat-ms
+ * подписчикам уходит комментарий, чтобы обнаружить оборванные соединения.
+ */
+@Component
+public class WalletSubscriptions {
+    private static final Logger log = LoggerFactory.getLogger(WalletSubscriptions.class);
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ConcurrentHashMap<UUID, Topic> topics = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper;
+    private final ExecutorService loaders;
+    private final ScheduledExecutorService heartbeats;
+    private final long slowSubscriberNanos;
+    private final Counter droppedSubscribers;
+
+    public WalletSubscriptions(MeterRegistry meterRegistry, ObjectMapper objectMapper,
+                               @Value("${wallet.events.sender-threads:4}") int loaderThreads,
+                               @Value("${wallet.events.slow-subscriber-ms:5000}") long slowSubscriberMs,
+                               @Value("${wallet.events.heartbeat-ms:15000}") long heartbeatMs) {
+        this.objectMapper = objectMapper;
+        this.slowSubscriberNanos = TimeUnit.MILLISECONDS.toNanos(slowSubscriberMs);
+        this.loaders = Executors.newFixedThreadPool(loaderThreads, r -> daemon(r, "wallet-events"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "wallet-events-heartbeat"));
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long checkMs = Math.max(1, slowSubscriberMs / 4);
+        heartbeats.scheduleWithFixedDelay(this::dropStalled, checkMs, checkMs, TimeUnit.MILLISECONDS);
+        meterRegistry.gauge("wallet.events.subscribers", topics,
+                map -> map.values().stream().mapToInt(topic -> topic.subscribers.size()).sum());
+        this.droppedSubscribers = Counter.builder("wallet.events.dropped")
+                .description("Subscribers disconnected for being too slow")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Регистрирует подписчика, затем читает начальное состояние loader-ом (null — кошелька нет)
+     * и переводит запрос в асинхронный режим. Изменение, закоммиченное между регистрацией и чтением,
+     * придёт сигналом, а не потеряется.
+     * @return false — кошелька нет, ответ не тронут
+     */
+    public boolean subscribe(UUID id, HttpServletRequest request, HttpServletResponse response,
+                             Function<UUID, WalletResponseDTO> loader) {
+        Subscriber subscriber = new Subscriber(id);
+        topics.compute(id, (key, topic) -> {
+            Topic current = topic != null ? topic : new Topic(key, loader);
+            current.subscribers.add(subscriber);
+            return current;
+        });
+        WalletResponseDTO initial;
+        try {
+            initial = ReadYourWrites.onPrimary(() -> loader.apply(id));
+        } catch (RuntimeException ex) {
+            unsubscribe(subscriber);
+            throw ex;
+        }
+        if (initial == null) {
+            unsubscribe(subscriber);
+            return false;
+        }
+        // состояние, пришедшее сигналом во время чтения, не старше начального
+        subscriber.pending.compareAndSet(null, initial);
+        subscriber.start(request, response);
+        return true;
+    }
+
+    /**
+     * Сигнал об изменении кошелька: после коммита текущей транзакции или сразу, если транзакции нет.
+     */
+    public void changedAfterCommit(UUID id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changed(id);
+                }
+            });
+        } else {
+            changed(id);
+        }
+    }
+
+    public int subscriberCount(UUID id) {
+        Topic topic = topics.get(id);
+        return topic != null ? topic.subscribers.size() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::close));
+        loaders.shutdownNow();
+    }
+
+    private void changed(UUID id) {
+        Topic topic = topics.get(id);
+        if (topic != null) {
+            topic.signal();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        topics.computeIfPresent(subscriber.walletId, (key, topic) -> {
+            topic.subscribers.remove(subscriber);
+            return topic.subscribers.isEmpty() ? null : topic;
+        });
+    }
+
+    private void heartbeat() {
+        try {
+            topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::ping));
+        } catch (RuntimeException ex) {
+            log.warn("Heartbeat round failed", ex);
+        }
+    }
+
+    private void dropStalled() {
+        try {
+            long now = System.nanoTime();
+            topics.values().forEach(topic -> topic.subscribers.forEach(subscriber -> {
+                long since = subscriber.blockedSince;
+                if (since != 0 && now - since > slowSubscriberNanos) {
+                    subscriber.drop();
+                }
+            }));
+        } catch (RuntimeException ex) {
+            log.warn("Slow subscriber check failed", ex);
+        }
+    }
+
+    private byte[] frame(WalletResponseDTO state) {
+        try {
+            return ("event: wallet\ndata: " + objectMapper.writeValueAsString(state) + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Подписчики одного кошелька. Перечитывание идёт не больше чем одной задачей за раз:
+     * сигналы, пришедшие во время чтения, вызывают ещё одно чтение после него.
+     */
+    private final class Topic {
+        private final UUID walletId;
+        private final Function<UUID, WalletResponseDTO> loader;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile WalletResponseDTO lastState;
+
+        private Topic(UUID walletId, Function<UUID, WalletResponseDTO> loader) {
+            this.walletId = walletId;
+            this.loader = loader;
+        }
+
+        private void signal() {
+            dirty.set(true);
+            if (refreshing.compareAndSet(false, true)) {
+                loaders.execute(this::refresh);
+            }
+        }
+
+        private void refresh() {
+            try {
+                while (dirty.getAndSet(false)) {
+                    // сигнал приходит после коммита на primary, реплика может его ещё не видеть
+                    WalletResponseDTO state = ReadYourWrites.onPrimary(() -> loader.apply(walletId));
+                    if (state == null) {
+                        subscribers.forEach(Subscriber::close);
+                        return;
+                    }
+                    // сигнал без видимого изменения (баланс и владелец те же) подписчикам не нужен
+                    if (!Objects.equals(state, lastState)) {
+                        lastState = state;
+                        subscribers.forEach(subscriber -> subscriber.offer(state));
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Failed to reload wallet {} for subscribers", walletId, ex);
+            } finally {
+                refreshing.set(false);
+                if (dirty.get() && refreshing.compareAndSet(false, true)) {
+                    loaders.execute(this::refresh);
+                }
+            }
+        }
+    }
+
+    /**
+     * Запись в ответ — под монитором подписчика: её вызывают и поток сигнала, и контейнер (onWritePossible).
+     */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final UUID walletId;
+        private final AtomicReference<WalletResponseDTO> pending = new AtomicReference<>();
+        private final AtomicBoolean pingRequested = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private AsyncContext context;
+        private ServletOutputStream out;
+        private boolean unflushed;
+        // System.nanoTime() момента, когда сокет перестал принимать данные; 0 — принимает
+        private volatile long blockedSince;
+
+        private Subscriber(UUID walletId) {
+            this.walletId = walletId;
+        }
+
+        private synchronized void start(HttpServletRequest request, HttpServletResponse response) {
+            context = request.startAsync(request, response);
+            context.setTimeout(0);
+            context.addListener(this);
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader("Cache-Control", "no-cache");
+            try {
+                out = response.getOutputStream();
+            } catch (IOException ex) {
+                close();
+                return;
+            }
+            // контейнер сразу вызовет onWritePossible и отправит начальное состояние
+            out.setWriteListener(this);
+        }
+
+        private void offer(WalletResponseDTO state) {
+            pending.set(state);
+            drain();
+        }
+
+        private void ping() {
+            pingRequested.set(true);
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (out == null || closed.get()) {
+                    return;
+                }
+                try {
+                    while (out.isReady()) {
+                        if (unflushed) {
+                            out.flush();
+                            unflushed = false;
+                            continue;
+                        }
+                        WalletResponseDTO state = pending.getAndSet(null);
+                        boolean ping = pingRequested.getAndSet(false);
+                        if (state == null && !ping) {
+                            blockedSince = 0;
+                            return;
+                        }
+                        out.write(state != null ? frame(state) : PING);
+                        unflushed = true;
+                    }
+                    // isReady() == false: контейнер допишет буфер и вызовет onWritePossible
+                    if (blockedSince == 0) {
+                        blockedSince = System.nanoTime();
+                    }
+                    return;
+                } catch (IOException | RuntimeException ex) {
+                    // клиент ушёл или ответ уже закрыт
+                    log.debug("Failed to write to subscriber of wallet {}", walletId, ex);
+                }
+            }
+            close();
+        }
+
+        private void drop() {
+            if (closed.get()) {
+                return;
+            }
+            droppedSubscribers.increment();
+            log.debug("Dropping slow subscriber of wallet {}", walletId);
+            close();
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            unsubscribe(this);
+            AsyncContext current;
+            synchronized (this) {
+                current = context;
+            }
+            if (current != null) {
+                try {
+                    current.complete();
+                } catch (IllegalStateException ex) {
+                    // ответ уже завершён контейнером
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed.set(true);
+            unsubscribe(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.wallet.service;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind: те же однопоточные шарды ({@link SingleWriterShards}), что у {@link ShardedBalanceEngine},
+ * но операция подтверждается только после записи
+ * в локальный {@link OperationJournal}. Баланс проверяется по состоянию в памяти, в БД операции
+ * уходят большими упорядоченными пачками в фоне; сброшенные сегменты журнала удаляются.
+ * <p>
+ * При старте, до приёма запросов, несброшенные записи журнала (seq больше snapshot_seq строки)
+ * дописываются в БД. Предполагается один экземпляр сервиса на каталог журнала и набор кошельков.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.mode", havingValue = "write-behind")
+public class WriteBehindBalanceEngine implements BalanceEngine {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBalanceEngine.class);
+
+    private final WalletRepository walletRepository;
+    private final WalletOperationRepository walletOperationRepository;
+    private final WalletOutbox walletOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationJournal journal;
+    private final SingleWriterShards shards;
+    // по шардам: lsn самой старой записи журнала, ещё не сброшенной в БД; MAX_VALUE — таких нет
+    private final AtomicLong[] oldestPending;
+    private final long flushIntervalMs;
+
+    public WriteBehindBalanceEngine(WalletRepository walletRepository,
+                                    WalletOperationRepository walletOperationRepository,
+                                    WalletOutbox walletOutbox,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${wallet.engine.write-behind.journal-dir:wallet-journal}") String journalDir,
+                                    @Value("${wallet.engine.write-behind.segment-size-mb:64}") int segmentSizeMb,
+                                    @Value("${wallet.engine.write-behind.fsync:group}") String fsync,
+                                    @Value("${wallet.engine.write-behind.fsync-interval-ms:10}") long fsyncIntervalMs,
+                                    @Value("${wallet.engine.write-behind.shards:4}") int shardCount,
+                                    @Value("${wallet.engine.write-behind.batch-size:5000}") int batchSize,
+                                    @Value("${wallet.engine.write-behind.flush-interval-ms:50}") long flushIntervalMs) {
+        this.walletRepository = walletRepository;
+        this.walletOperationRepository = walletOperationRepository;
+        this.walletOutbox = walletOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushIntervalMs = flushIntervalMs;
+        this.journal = new OperationJournal(Path.of(journalDir), segmentSizeMb * 1024 * 1024,
+                OperationJournal.FsyncPolicy.parse(fsync), fsyncIntervalMs);
+        this.oldestPending = new AtomicLong[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            oldestPending[i] = new AtomicLong(Long.MAX_VALUE);
+        }
+        this.shards = new SingleWriterShards("wallet-write-behind-", shardCount, batchSize, walletRepository,
+                walletOperationRepository, walletOutbox, transactionTemplate, this::flushed);
+    }
+
+    /**
+     * Дописывает в БД записи журнала, не попавшие туда до остановки, и только потом запускает сброс.
+     */
+    @PostConstruct
+    public void recover() {
+        Map<UUID, List<OperationJournal.Entry>> byWallet = new LinkedHashMap<>();
+        for (OperationJournal.Entry entry : journal.recovered()) {
+            byWallet.computeIfAbsent(entry.walletId(), id -> new ArrayList<>()).add(entry);
+        }
+        int[] replayed = new int[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            for (Map.Entry<UUID, List<OperationJournal.Entry>> wallet : byWallet.entrySet()) {
+                replayed[0] += replay(wallet.getKey(), wallet.getValue(), now);
+            }
+        });
+        if (replayed[0] > 0) {
+            log.info("Replayed {} journal operations for {} wallets", replayed[0], byWallet.size());
+        }
+        journal.releaseFlushed(() -> Long.MAX_VALUE);
+        shards.startFlushing(flushIntervalMs);
+    }
+
+    @Override
+    public OperationResult<WalletResponseDTO> changeBalance(UUID id, WalletOperationRequestDTO dto) {
+        SingleWriterShards.Shard shard = shards.shardFor(id);
+        Applied applied = shard.call(() -> apply(shard, id, dto.getOperationType(), dto.getAmount()));
+        // ожидание fsync вне потока шарда: пока он ждёт, шард копит следующую группу
+        journal.awaitDurable(applied.lsn);
+        return applied.result;
+    }
+
+    @Override
+    public WalletResponseDTO read(UUID id, Function<UUID, WalletResponseDTO> loader) {
+        return shards.read(id, loader);
+    }
+
+    @Override
+    public <T> T exclusive(UUID id, Supplier<T> action) {
+        return shards.exclusive(id, action);
+    }
+
+    @Override
+    public boolean rowIsAuthoritative() {
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shards.shutdown();
+        // несброшенное остаётся в журнале до следующего старта
+        journal.close();
+    }
+
+    private int replay(UUID walletId, List<OperationJournal.Entry> entries, LocalDateTime now) {
+        Wallet wallet = walletRepository.findById(walletId).orElse(null);
+        if (wallet == null) {
+            log.warn("Journal has {} operations for missing wallet {}, skipped", entries.size(), walletId);
+            return 0;
+        }
+        long seq = wallet.getSnapshotSeq();
+        List<WalletOperation> operations = new ArrayList<>();
+        OperationJournal.Entry last = null;
+        for (OperationJournal.Entry entry : entries) {
+            if (entry.seq() <= seq) {
+                continue;
+            }
+            if (entry.seq() != seq + 1) {
+                throw new IllegalStateException("Journal for wallet " + walletId + " jumps from seq " + seq
+                        + " to " + entry.seq());
+            }
+            seq = entry.seq();
+            last = entry;
+            operations.add(WalletOperation.of(walletId, entry.seq(), entry.type(), Money.ofMinor(entry.amount()),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()), ZoneId.systemDefault())));
+        }
+        if (last == null) {
+            return 0;
+        }
+        walletOperationRepository.saveAll(operations);
+        Money balance = Money.ofMinor(last.balanceAfter());
+        walletRepository.setBalance(walletId, balance.minorUnits(), last.seq(), now);
+        walletOutbox.balanceChanged(walletId, balance, last.seq(), now);
+        return operations.size();
+    }
+
+    private long oldestPending() {
+        long oldest = Long.MAX_VALUE;
+        for (AtomicLong shard : oldestPending) {
+            oldest = Math.min(oldest, shard.get());
+        }
+        return oldest;
+    }
+
+    private void flushed(int shard) {
+        oldestPending[shard].set(Long.MAX_VALUE);
+        journal.releaseFlushed(this::oldestPending);
+    }
+
+    private Applied apply(SingleWriterShards.Shard shard, UUID id, OperationType type, Money amount) {
+        SingleWriterShards.WalletState state = shard.load(id);
+        if (state == null) {
+            return new Applied(OperationResult.notFound(), 0);
+        }
+        Money balance = state.balanceAfter(type, amount);
+        if (balance == null) {
+            return new Applied(OperationResult.insufficientFunds(), 0);
+        }
+        // сначала журнал: если запись не удалась, состояние в памяти не меняется
+        long lsn = journal.append(id, state.seq() + 1, type, amount.minorUnits(), balance.minorUnits(),
+                oldestPending[shard.index()]);
+        shard.applied(state, type, amount, balance);
+        return new Applied(OperationResult.success(state.toResponse()), lsn);
+    }
+
+    private record Applied(OperationResult<WalletResponseDTO> result, long lsn) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.BatchOperationItemDTO;
+import com.example.wallet.DTO.BatchOperationRequestDTO;
+import com.example.wallet.DTO.BatchOperationResponseDTO;
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 10k одиночных PATCH против одного POST /operations:batch на 10k операций.
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=BatchOperationBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class BatchOperationBenchmark {
+    private static final int WALLETS = 1000;
+    private static final int OPERATIONS = 10_000;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void singleCallsVersusOneBatch() {
+        List<UUID> wallets = new ArrayList<>(WALLETS);
+        for (int i = 0; i < WALLETS; i++) {
+            wallets.add(restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("payout-" + i), WalletResponseDTO.class)
+                    .getBody().id());
+        }
+        WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+        deposit.setOperationType(OperationType.DEPOSIT);
+        deposit.setAmount(Money.of(1));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            restTemplate.exchange("/api/wallets/" + wallets.get(i % WALLETS), HttpMethod.PATCH,
+                    new HttpEntity<>(deposit), WalletResponseDTO.class);
+        }
+        long singleMs = (System.nanoTime() - start) / 1_000_000;
+
+        List<BatchOperationItemDTO> items = new ArrayList<>(OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            items.add(new BatchOperationItemDTO(wallets.get(i % WALLETS), OperationType.DEPOSIT, Money.of(1)));
+        }
+        start = System.nanoTime();
+        BatchOperationResponseDTO batch = restTemplate.postForObject("/api/wallets/operations:batch",
+                new BatchOperationRequestDTO(true, items), BatchOperationResponseDTO.class);
+        long batchMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(batch.committed());
+        System.out.printf("%d operations: single PATCH calls %d ms, one batch %d ms (x%.1f)%n",
+                OPERATIONS, singleMs, batchMs, (double) singleMs / Math.max(batchMs, 1));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.BatchItemStatus;
+import com.example.wallet.DTO.BatchOperationItemDTO;
+import com.example.wallet.DTO.BatchOperationRequestDTO;
+import com.example.wallet.DTO.BatchOperationResponseDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class BatchOperationIntegrationTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void perItemBatch_shouldApplyValidItemsAndReportFailuresInInputOrder() {
+        UUID first = createWallet("BatchA");
+        UUID second = createWallet("BatchB");
+        UUID missing = UUID.randomUUID();
+
+        ResponseEntity<BatchOperationResponseDTO> response = post(false, List.of(
+                item(second, OperationType.DEPOSIT, 50),
+                item(first, OperationType.WITHDRAW, 10),
+                item(missing, OperationType.DEPOSIT, 1),
+                item(first, OperationType.DEPOSIT, 30),
+                item(first, OperationType.WITHDRAW, 20)));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        BatchOperationResponseDTO body = response.getBody();
+        assertTrue(body.committed());
+        assertEquals(List.of(BatchItemStatus.APPLIED, BatchItemStatus.INSUFFICIENT_FUNDS, BatchItemStatus.NOT_FOUND,
+                        BatchItemStatus.APPLIED, BatchItemStatus.APPLIED),
+                body.results().stream().map(r -> r.status()).toList());
+        assertEquals(0, body.results().get(4).balance().compareTo(Money.of(10)));
+        assertEquals(0, balance(first).compareTo(Money.of(10)));
+        assertEquals(0, balance(second).compareTo(Money.of(50)));
+    }
+
+    @Test
+    void atomicBatch_shouldRollBackEverything_whenOneItemFails() {
+        UUID wallet = createWallet("AtomicBatch");
+
+        ResponseEntity<BatchOperationResponseDTO> response = post(true, List.of(
+                item(wallet, OperationType.DEPOSIT, 100),
+                item(wallet, OperationType.WITHDRAW, 500)));
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertFalse(response.getBody().committed());
+        assertEquals(BatchItemStatus.ROLLED_BACK, response.getBody().results().get(0).status());
+        assertEquals(BatchItemStatus.INSUFFICIENT_FUNDS, response.getBody().results().get(1).status());
+        assertEquals(0, balance(wallet).signum());
+    }
+
+    private ResponseEntity<BatchOperationResponseDTO> post(boolean atomic, List<BatchOperationItemDTO> items) {
+        return restTemplate.postForEntity("/api/wallets/operations:batch",
+                new BatchOperationRequestDTO(atomic, items), BatchOperationResponseDTO.class);
+    }
+
+    private static BatchOperationItemDTO item(UUID walletId, OperationType type, long amount) {
+        return new BatchOperationItemDTO(walletId, type, Money.of(amount));
+    }
+
+    private UUID createWallet(String owner) {
+        return restTemplate.postForEntity("/api/wallets", new WalletRequestDTO(owner), WalletResponseDTO.class)
+                .getBody().id();
+    }
+
+    private Money balance(UUID walletId) {
+        return restTemplate.getForObject("/api/wallets/" + walletId, WalletResponseDTO.class).balance();
+    }
+}
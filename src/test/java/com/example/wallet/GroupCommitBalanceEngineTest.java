@@ -0,0 +1,91 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "wallet.engine.mode=group-commit",
+        "wallet.engine.group-commit.window-micros=5000",
+        "wallet.engine.group-commit.max-batch-size=32"
+})
+@ActiveProfiles("test")
+public class GroupCommitBalanceEngineTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void changeBalance_concurrentOperations_shouldBeExactWithPerOperationRejections() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("GroupCommitUser")).id();
+        AtomicLong expected = new AtomicLong();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            futures.add(executor.submit(() -> {
+                long amount = ThreadLocalRandom.current().nextLong(1, 50);
+                boolean deposit = ThreadLocalRandom.current().nextBoolean();
+                if (walletService.changeBalance(walletId, operation(deposit ? OperationType.DEPOSIT : OperationType.WITHDRAW, amount)).isSuccess()) {
+                    expected.addAndGet(deposit ? amount : -amount);
+                } else {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, walletService.getWalletById(walletId).value().balance().compareTo(Money.of(expected.get())));
+        DistributionSummary batchSizes = meterRegistry.get("wallet.group_commit.batch_size").summary();
+        assertTrue(batchSizes.totalAmount() >= 2000);
+        assertTrue(batchSizes.max() <= 32);
+    }
+
+    @Test
+    void changeBalance_shouldRejectOnlyOperationsThatOverdraw() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("Sequential")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 10));
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS,
+                walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 11)).status());
+        assertEquals(0, walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 10)).value().balance().signum());
+    }
+
+    @Test
+    void changeBalance_shouldReturnNotFound_forUnknownWallet() {
+        assertEquals(OperationResult.Status.NOT_FOUND,
+                walletService.changeBalance(UUID.randomUUID(), operation(OperationType.DEPOSIT, 1)).status());
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+}
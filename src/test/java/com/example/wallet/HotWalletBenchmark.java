@@ -0,0 +1,69 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Сравнение ops/sec на одном "горячем" кошельке для режимов jpa, sharded и group-commit.
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=HotWalletBenchmark
+ */
+@Tag("benchmark")
+public class HotWalletBenchmark {
+    private static final int THREADS = 32;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void compareEngines() throws Exception {
+        double jpa = run("jpa");
+        for (String mode : new String[]{"sharded", "group-commit"}) {
+            double ops = run(mode);
+            System.out.printf("hot wallet: jpa=%.0f ops/s, %s=%.0f ops/s (x%.1f)%n", jpa, mode, ops, ops / jpa);
+        }
+    }
+
+    private double run(String mode) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--wallet.engine.mode=" + mode,
+                        "--spring.datasource.url=jdbc:h2:mem:bench-" + mode + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")) {
+            WalletService walletService = context.getBean(WalletService.class);
+            UUID walletId = walletService.createWallet(new WalletRequestDTO("bench-" + mode)).id();
+            WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+            deposit.setOperationType(OperationType.DEPOSIT);
+            deposit.setAmount(Money.of(1));
+
+            // прогрев
+            for (int i = 0; i < 1000; i++) {
+                walletService.changeBalance(walletId, deposit);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>(OPERATIONS);
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                futures.add(executor.submit(() -> walletService.changeBalance(walletId, deposit)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            executor.shutdown();
+            return OPERATIONS / (elapsed / 1_000_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.IdempotencyRecord;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.repository.IdempotencyRecordRepository;
+import com.example.wallet.repository.WalletOperationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class IdempotencyIntegrationTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private WalletOperationRepository walletOperationRepository;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    void retriedPatch_withSameKey_shouldApplyOnce() {
+        UUID walletId = createWallet("IdempotentUser");
+
+        ResponseEntity<WalletResponseDTO> first = deposit(walletId, "payout-42", 100);
+        ResponseEntity<WalletResponseDTO> retry = deposit(walletId, "payout-42", 100);
+
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals(0, balance(walletId).compareTo(Money.of(100)));
+        assertEquals(1, walletOperationRepository.countByWalletId(walletId));
+    }
+
+    @Test
+    void concurrentDuplicates_shouldApplyOnce() throws Exception {
+        UUID walletId = createWallet("ConcurrentIdempotentUser");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<WalletResponseDTO>>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> deposit(walletId, "burst", 10)));
+        }
+        for (Future<ResponseEntity<WalletResponseDTO>> future : futures) {
+            assertEquals(HttpStatus.OK, future.get().getStatusCode());
+        }
+        executor.shutdown();
+        assertEquals(0, balance(walletId).compareTo(Money.of(10)));
+    }
+
+    @Test
+    void abandonedClaim_shouldBlockUntilLeaseExpires() {
+        UUID walletId = createWallet("AbandonedClaimUser");
+        LocalDateTime now = LocalDateTime.now();
+        // захваты без ответа, оставшиеся от упавшего экземпляра
+        idempotencyRecordRepository.saveAndFlush(new IdempotencyRecord(walletId + ":live", walletId, now, now.plusMinutes(5)));
+        idempotencyRecordRepository.saveAndFlush(new IdempotencyRecord(walletId + ":stale", walletId, now.minusMinutes(1), now.minusSeconds(1)));
+
+        assertEquals(HttpStatus.CONFLICT, deposit(walletId, "live", 5).getStatusCode());
+        assertEquals(HttpStatus.OK, deposit(walletId, "stale", 7).getStatusCode());
+        assertEquals(HttpStatus.OK, deposit(walletId, "stale", 7).getStatusCode());
+        assertEquals(0, balance(walletId).compareTo(Money.of(7)));
+        // ответ продлевает запись на полный ttl
+        assertTrue(idempotencyRecordRepository.findById(walletId + ":stale").orElseThrow()
+                .getExpiresAt().isAfter(now.plusHours(1)));
+    }
+
+    @Test
+    void differentKeys_shouldApplyEach() {
+        UUID walletId = createWallet("TwoKeysUser");
+        deposit(walletId, "a", 5);
+        deposit(walletId, "b", 5);
+        assertEquals(0, balance(walletId).compareTo(Money.of(10)));
+    }
+
+    private UUID createWallet(String owner) {
+        return restTemplate.postForEntity("/api/wallets", new WalletRequestDTO(owner), WalletResponseDTO.class)
+                .getBody().id();
+    }
+
+    private ResponseEntity<WalletResponseDTO> deposit(UUID walletId, String key, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.DEPOSIT);
+        dto.setAmount(Money.of(amount));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        return restTemplate.exchange("/api/wallets/" + walletId, HttpMethod.PATCH,
+                new HttpEntity<>(dto, headers), WalletResponseDTO.class);
+    }
+
+    private Money balance(UUID walletId) {
+        return restTemplate.getForObject("/api/wallets/" + walletId, WalletResponseDTO.class).balance();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.LedgerEntryType;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.JpaBalanceEngine;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletMetrics;
+import com.example.wallet.service.WalletOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JpaBalanceEngineTest {
+    @Mock
+    private WalletRepository walletRepository;
+    @Mock
+    private WalletOperationRepository walletOperationRepository;
+    @Mock
+    private WalletOutbox walletOutbox;
+    private JpaBalanceEngine balanceEngine;
+    private UUID walletId;
+    @BeforeEach
+    void setUp() {
+        balanceEngine = new JpaBalanceEngine(walletRepository, walletOperationRepository,
+                new WalletMetrics(new SimpleMeterRegistry(), false, 0), walletOutbox);
+        walletId = UUID.randomUUID();
+    }
+
+    @Test
+    void changeBalance_shouldDepositSuccessfully() {
+        Wallet wallet = new Wallet(walletId, Money.of(80));
+        wallet.setOwner("TestUser");
+        wallet.setSnapshotSeq(7);
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.DEPOSIT);
+        dto.setAmount(Money.of(30));
+        when(walletRepository.deposit(eq(walletId), eq(3000L), any(LocalDateTime.class))).thenReturn(1);
+        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
+        WalletResponseDTO response = balanceEngine.changeBalance(walletId, dto).value();
+        assertEquals(Money.of(80), response.balance());
+        assertEquals("TestUser", response.owner());
+        verify(walletRepository, times(1)).deposit(eq(walletId), eq(3000L), any(LocalDateTime.class));
+        verify(walletRepository, never()).save(any());
+        verify(walletOperationRepository).save(argThat(entry -> entry.getSeq() == 7
+                && entry.getOperationType() == LedgerEntryType.DEPOSIT
+                && entry.getDelta().compareTo(Money.of(30)) == 0));
+        verify(walletOutbox).balanceChanged(eq(walletId), eq(Money.of(80)), eq(7L), any(LocalDateTime.class));
+    }
+
+    @Test
+    void changeBalance_shouldWithdrawSuccessfully() {
+        Wallet wallet = new Wallet(walletId, Money.of(60));
+        wallet.setOwner("TestUser");
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.WITHDRAW);
+        dto.setAmount(Money.of(40));
+        when(walletRepository.withdraw(eq(walletId), eq(4000L), any(LocalDateTime.class))).thenReturn(1);
+        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
+        WalletResponseDTO response = balanceEngine.changeBalance(walletId, dto).value();
+        assertEquals(Money.of(60), response.balance());
+    }
+    @Test
+    void changeBalance_shouldReturnInsufficientFunds_whenBalanceTooLow() {
+        UUID testId = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.WITHDRAW);
+        dto.setAmount(Money.of(50));
+
+        when(walletRepository.withdraw(eq(testId), eq(5000L), any(LocalDateTime.class))).thenReturn(0);
+        when(walletRepository.existsById(testId)).thenReturn(true);
+
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS, balanceEngine.changeBalance(testId, dto).status());
+        verify(walletRepository, never()).save(any());
+        verify(walletOperationRepository, never()).save(any());
+    }
+
+    @Test
+    void changeBalance_shouldReturnNotFound_whenWalletMissing() {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.WITHDRAW);
+        dto.setAmount(Money.of(50));
+
+        when(walletRepository.withdraw(eq(walletId), eq(5000L), any(LocalDateTime.class))).thenReturn(0);
+        when(walletRepository.existsById(walletId)).thenReturn(false);
+
+        assertEquals(OperationResult.Status.NOT_FOUND, balanceEngine.changeBalance(walletId, dto).status());
+    }
+}
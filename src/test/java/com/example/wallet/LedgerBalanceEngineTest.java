@@ -0,0 +1,152 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.LedgerRebuilder;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "wallet.engine.mode=ledger",
+        "wallet.ledger.snapshot-every=50"
+})
+@ActiveProfiles("test")
+public class LedgerBalanceEngineTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private WalletOperationRepository walletOperationRepository;
+    @Autowired
+    private LedgerRebuilder ledgerRebuilder;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void changeBalance_concurrentOperations_shouldAppendOneEntryPerSuccessfulOperation() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("LedgerUser")).id();
+        AtomicLong expected = new AtomicLong();
+        AtomicInteger applied = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> {
+                long amount = ThreadLocalRandom.current().nextLong(1, 50);
+                boolean deposit = ThreadLocalRandom.current().nextBoolean();
+                if (walletService.changeBalance(walletId, operation(deposit ? OperationType.DEPOSIT : OperationType.WITHDRAW, amount)).isSuccess()) {
+                    expected.addAndGet(deposit ? amount : -amount);
+                    applied.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, walletService.getWalletById(walletId).value().balance().compareTo(Money.of(expected.get())));
+        assertEquals(applied.get(), walletOperationRepository.countByWalletId(walletId));
+        Wallet snapshot = walletRepository.findById(walletId).orElseThrow();
+        assertTrue(applied.get() - snapshot.getSnapshotSeq() < 50, "snapshot must lag by less than snapshot-every");
+    }
+
+    @Test
+    void getWalletById_shouldReturnSnapshotPlusTail() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("TailUser")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 100));
+        walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 30));
+
+        assertEquals(0, walletRepository.findById(walletId).orElseThrow().getBalance().signum());
+        assertEquals(0, walletService.getWalletById(walletId).value().balance().compareTo(Money.of(70)));
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS,
+                walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 71)).status());
+    }
+
+    @Test
+    void periodicSnapshot_shouldFoldTailOfWrittenWallet() throws InterruptedException {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("FoldedUser")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 60));
+        walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 15));
+
+        // хвост короче snapshot-every, переносит его только фоновый обход (раз в 5 с)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (walletRepository.findById(walletId).orElseThrow().getSnapshotSeq() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        Wallet snapshot = walletRepository.findById(walletId).orElseThrow();
+        assertEquals(2, snapshot.getSnapshotSeq());
+        assertEquals(Money.of(45), snapshot.getBalance());
+    }
+
+    @Test
+    void updateBalance_concurrentWithAppends_shouldTakeNextSeqAfterTail() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("AdjustedLedgerUser")).id();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int n = i;
+            // exclusive переносит снапшот, но дописывания продолжаются и между переносом и ADJUSTMENT
+            futures.add(executor.submit(() -> n % 20 == 0
+                    ? walletService.updateBalance(walletId, Money.of(1000))
+                    : walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 1))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Money balance = walletService.getWalletById(walletId).value().balance();
+        assertEquals(400, walletOperationRepository.countByWalletId(walletId));
+        assertTrue(ledgerRebuilder.rebuildAll() >= 1);
+        assertEquals(0, walletRepository.findById(walletId).orElseThrow().getBalance().compareTo(balance));
+    }
+
+    @Test
+    void rebuild_shouldRestoreBalanceFromLedger() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("RebuildUser")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 40));
+        walletService.updateBalance(walletId, Money.of(25));
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 5));
+        transactionTemplate.executeWithoutResult(status ->
+                walletRepository.setBalance(walletId, Money.of(999).minorUnits(), 0, LocalDateTime.now()));
+
+        assertTrue(ledgerRebuilder.rebuildAll() >= 1);
+
+        Wallet rebuilt = walletRepository.findById(walletId).orElseThrow();
+        assertEquals(0, rebuilt.getBalance().compareTo(Money.of(30)));
+        assertEquals(3, rebuilt.getSnapshotSeq());
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+}
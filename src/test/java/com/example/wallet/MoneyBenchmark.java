@@ -0,0 +1,66 @@
+package com.example.wallet;
+
+import com.example.wallet.model.Money;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.LongSupplier;
+
+/**
+ * Горячий путь операции с балансом на BigDecimal и на Money: разбор суммы из JSON-текста,
+ * проверка достаточности средств, списание и зачисление. Печатает ns/op и байт/op.
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=MoneyBenchmark
+ */
+@Tag("benchmark")
+public class MoneyBenchmark {
+    private static final int OPERATIONS = 5_000_000;
+    private static final String[] AMOUNTS = {"1", "12.5", "0.99", "100.00", "7.25"};
+
+    @Test
+    void compareBigDecimalAndMoney() {
+        for (int round = 0; round < 3; round++) {
+            measure("bigdecimal", MoneyBenchmark::bigDecimalPath);
+            measure("money", MoneyBenchmark::moneyPath);
+        }
+    }
+
+    private static long bigDecimalPath() {
+        BigDecimal balance = new BigDecimal("1000000.00");
+        for (int i = 0; i < OPERATIONS; i++) {
+            BigDecimal amount = new BigDecimal(AMOUNTS[i % AMOUNTS.length]);
+            if ((i & 1) == 0) {
+                balance = balance.add(amount);
+            } else if (balance.compareTo(amount) >= 0) {
+                balance = balance.subtract(amount);
+            }
+        }
+        return balance.unscaledValue().longValue();
+    }
+
+    private static long moneyPath() {
+        Money balance = Money.valueOf("1000000.00");
+        for (int i = 0; i < OPERATIONS; i++) {
+            Money amount = Money.valueOf(AMOUNTS[i % AMOUNTS.length]);
+            if ((i & 1) == 0) {
+                balance = balance.plus(amount);
+            } else if (!balance.isLessThan(amount)) {
+                balance = balance.minus(amount);
+            }
+        }
+        return balance.minorUnits();
+    }
+
+    private static void measure(String name, LongSupplier path) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long result = path.getAsLong();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%s: %.1f ns/op, %.1f B/op (result %d)%n",
+                name, (double) elapsed / OPERATIONS, (double) allocated / OPERATIONS, result);
+    }
+}
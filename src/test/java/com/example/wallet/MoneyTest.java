@@ -0,0 +1,51 @@
+package com.example.wallet;
+
+import com.example.wallet.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MoneyTest {
+
+    @Test
+    void valueOf_shouldParseUpToTwoDecimalPlaces() {
+        assertEquals(1000, Money.valueOf("10").minorUnits());
+        assertEquals(1050, Money.valueOf("10.5").minorUnits());
+        assertEquals(1005, Money.valueOf("10.05").minorUnits());
+        assertEquals(-1, Money.valueOf("-0.01").minorUnits());
+        assertEquals(Money.ZERO, Money.valueOf("0.00"));
+    }
+
+    @Test
+    void valueOf_shouldRejectExtraScaleAndMalformedInput() {
+        for (String text : new String[]{"10.555", "10.500", "1e3", ".5", "5.", "", "-", "+1", "1,5", " 1"}) {
+            assertThrows(IllegalArgumentException.class, () -> Money.valueOf(text), text);
+        }
+    }
+
+    @Test
+    void valueOf_shouldRejectOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("92233720368547758.08"));
+    }
+
+    @Test
+    void arithmetic_shouldDetectOverflow() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    void toString_shouldRenderPlainDecimal() {
+        assertEquals("0.00", Money.ZERO.toString());
+        assertEquals("12.05", Money.ofMinor(1205).toString());
+        assertEquals("-0.50", Money.ofMinor(-50).toString());
+        assertEquals(new BigDecimal("-92233720368547758.08"), Money.ofMinor(Long.MIN_VALUE).toBigDecimal());
+        assertTrue(Money.of(1).isLessThan(Money.valueOf("1.01")));
+    }
+}
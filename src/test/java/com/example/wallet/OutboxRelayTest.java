@@ -0,0 +1,99 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletEventDTO;
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.OutboxEventType;
+import com.example.wallet.repository.OutboxEventRepository;
+import com.example.wallet.service.InMemoryOutboxPublisher;
+import com.example.wallet.service.OutboxRelay;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+        "wallet.outbox.relay.poll-interval-ms=3600000",
+        "wallet.outbox.relay.batch-size=3"})
+@ActiveProfiles("test")
+public class OutboxRelayTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockitoSpyBean
+    private InMemoryOutboxPublisher publisher;
+
+    @Test
+    void mutations_shouldBeRelayedInOrderPerWallet() {
+        outboxRelay.drain();
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("outbox")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 10));
+        walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 50));
+        walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 4));
+        walletService.updateBalance(walletId, Money.of(100));
+        walletService.deleteWallet(walletId);
+
+        assertEquals(4, outboxRelay.drain());
+
+        List<WalletEventDTO> events = publisher.recent().stream()
+                .filter(event -> event.walletId().equals(walletId))
+                .toList();
+        assertEquals(4, events.size());
+        assertEquals(Money.of(10), events.get(0).balance());
+        assertEquals(Money.of(6), events.get(1).balance());
+        assertEquals(Money.of(100), events.get(2).balance());
+        assertEquals(OutboxEventType.DELETED, events.get(3).type());
+        assertNull(events.get(3).balance());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).eventId() > events.get(i - 1).eventId());
+        }
+        assertEquals(0, outboxEventRepository.count());
+        assertTrue(meterRegistry.get("wallet.outbox.relay.batch_size").summary().count() >= 2);
+        assertTrue(meterRegistry.get("wallet.outbox.relay.lag").timer().count() >= 4);
+    }
+
+    @Test
+    void failedPublish_shouldKeepEventsForRetry() throws Exception {
+        outboxRelay.drain();
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("outbox-retry")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 1));
+
+        doThrow(new IllegalStateException("broker down")).when(publisher).publish(anyList());
+        assertThrows(IllegalStateException.class, () -> outboxRelay.drain());
+        assertEquals(1, outboxEventRepository.count());
+
+        doCallRealMethod().when(publisher).publish(anyList());
+        assertEquals(1, outboxRelay.drain());
+        assertEquals(0, outboxEventRepository.count());
+        assertTrue(publisher.recent().stream().anyMatch(event -> event.walletId().equals(walletId)));
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+}
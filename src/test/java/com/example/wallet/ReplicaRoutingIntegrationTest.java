@@ -0,0 +1,146 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.ReplicaDataSource;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Primary и реплика — две разные H2 в памяти без репликации: по тому, какие данные вернул GET,
+ * видно, куда ушло чтение.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:rw-primary;DB_CLOSE_DELAY=-1",
+        "wallet.datasource.replicas.enabled=true",
+        "wallet.datasource.replicas.urls=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "wallet.datasource.replicas.lag-query=select lag_seconds from replica_status",
+        "wallet.datasource.replicas.max-lag-seconds=5",
+        "wallet.datasource.replicas.check-interval-ms=3600000",
+        "wallet.datasource.read-your-writes-ms=60000",
+        "wallet.cache.enabled=false"})
+@ActiveProfiles("test")
+public class ReplicaRoutingIntegrationTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:rw-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void copySchemaToReplica() throws Exception {
+        try (Connection replica = replica(); Statement statement = replica.createStatement()) {
+            statement.execute("drop all objects");
+            List<String> ddl = new ArrayList<>();
+            try (Connection primary = DriverManager.getConnection("jdbc:h2:mem:rw-primary", "sa", "");
+                 ResultSet script = primary.createStatement().executeQuery("script nodata")) {
+                while (script.next()) {
+                    ddl.add(script.getString(1));
+                }
+            }
+            for (String sql : ddl) {
+                statement.execute(sql);
+            }
+            statement.execute("create table replica_status (lag_seconds int)");
+            statement.execute("insert into replica_status values (0)");
+        }
+        replicaDataSource.checkReplicas();
+    }
+
+    @Test
+    void reads_shouldGoToReplica_writesAndPinnedClientsToPrimary() throws Exception {
+        UUID walletId = restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("routed"), WalletResponseDTO.class)
+                .getBody().id();
+
+        // реплика ещё не знает о кошельке
+        assertEquals(HttpStatus.NOT_FOUND, get(walletId, null).getStatusCode());
+        try (Connection replica = replica(); Statement statement = replica.createStatement()) {
+            statement.execute("insert into wallets (id, balance, created_at, updated_at, owner, snapshot_seq, held) values ('"
+                    + walletId + "', 4200, now(), now(), 'routed', 0, 0)");
+        }
+        assertEquals(Money.of(42), get(walletId, null).getBody().balance());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Client-Id", "writer");
+        WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+        deposit.setOperationType(OperationType.DEPOSIT);
+        deposit.setAmount(Money.of(5));
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/api/wallets/" + walletId, HttpMethod.PATCH,
+                new HttpEntity<>(deposit, headers), WalletResponseDTO.class).getStatusCode());
+
+        assertEquals(Money.of(5), get(walletId, "writer").getBody().balance());
+        assertEquals(Money.of(42), get(walletId, "reader").getBody().balance());
+    }
+
+    @Test
+    void laggingReplica_shouldFallBackToPrimary() throws Exception {
+        UUID walletId = restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("lagging"), WalletResponseDTO.class)
+                .getBody().id();
+        assertEquals(HttpStatus.NOT_FOUND, get(walletId, null).getStatusCode());
+
+        try (Connection replica = replica(); Statement statement = replica.createStatement()) {
+            statement.execute("update replica_status set lag_seconds = 60");
+        }
+        replicaDataSource.checkReplicas();
+
+        assertEquals(HttpStatus.OK, get(walletId, null).getStatusCode());
+        assertEquals(0, meterRegistry.get("wallet.datasource.replica.healthy").gauge().value());
+        assertEquals(60, meterRegistry.get("wallet.datasource.replica.lag").gauge().value());
+    }
+
+    @Test
+    void connectionWithCredentials_shouldBeRoutedLikeDefault() throws Exception {
+        // пулы Hikari не принимают учётные данные на вызов, поэтому источники без пула; replica_status есть только на реплике
+        JdbcDataSource primary = new JdbcDataSource();
+        primary.setURL("jdbc:h2:mem:rw-primary");
+        JdbcDataSource replica = new JdbcDataSource();
+        replica.setURL(REPLICA_URL);
+        ReplicaDataSource routing = new ReplicaDataSource(primary, List.of(replica), "select 0", 5, new SimpleMeterRegistry());
+        try (Connection connection = routing.getConnection("sa", "");
+             ResultSet rs = connection.createStatement().executeQuery("select lag_seconds from replica_status")) {
+            assertTrue(rs.next());
+        }
+    }
+
+    private ResponseEntity<WalletResponseDTO> get(UUID walletId, String clientId) {
+        HttpHeaders headers = new HttpHeaders();
+        if (clientId != null) {
+            headers.set("X-Client-Id", clientId);
+        }
+        return restTemplate.exchange("/api/wallets/" + walletId, HttpMethod.GET, new HttpEntity<>(headers),
+                WalletResponseDTO.class);
+    }
+
+    private static Connection replica() throws Exception {
+        return DriverManager.getConnection(REPLICA_URL, "sa", "");
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ops/sec операций над случайными кошельками при 1, 2 и 4 шардах хранилища (отдельные H2-файлы в target).
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=ShardScalingBenchmark
+ */
+@Tag("benchmark")
+public class ShardScalingBenchmark {
+    private static final int THREADS = 32;
+    private static final int WALLETS = 2_000;
+    private static final int OPERATIONS = 40_000;
+
+    @Test
+    void scaleWithShards() throws Exception {
+        double single = run(1);
+        System.out.printf("shards=1: %.0f ops/s%n", single);
+        for (int shards : new int[]{2, 4}) {
+            double ops = run(shards);
+            System.out.printf("shards=%d: %.0f ops/s (x%.1f)%n", shards, ops, ops / single);
+        }
+    }
+
+    private double run(int shards) throws Exception {
+        long runId = System.nanoTime();
+        List<String> urls = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            urls.add("jdbc:h2:./target/bench-shards/" + runId + "-" + i + ";LOCK_TIMEOUT=10000");
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--wallet.datasource.shards.enabled=true",
+                        "--wallet.datasource.shards.urls=" + String.join(",", urls),
+                        "--wallet.datasource.shards.maximum-pool-size=" + THREADS,
+                        "--spring.liquibase.enabled=true",
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--logging.level.com.example.wallet=INFO")) {
+            WalletService walletService = context.getBean(WalletService.class);
+            UUID[] wallets = new UUID[WALLETS];
+            for (int i = 0; i < WALLETS; i++) {
+                wallets[i] = walletService.createWallet(new WalletRequestDTO("bench")).id();
+            }
+            WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+            deposit.setOperationType(OperationType.DEPOSIT);
+            deposit.setAmount(Money.of(1));
+
+            // прогрев
+            for (int i = 0; i < 2000; i++) {
+                walletService.changeBalance(wallets[i % WALLETS], deposit);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>(OPERATIONS);
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                futures.add(executor.submit(() ->
+                        walletService.changeBalance(wallets[ThreadLocalRandom.current().nextInt(WALLETS)], deposit)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            executor.shutdown();
+            return OPERATIONS / (elapsed / 1_000_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletUpdateRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.repository.WalletHoldRepository;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.BalanceEngine;
+import com.example.wallet.service.ShardedBalanceEngine;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletExportService;
+import com.example.wallet.service.WalletService;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "wallet.engine.mode=sharded")
+@ActiveProfiles("test")
+public class ShardedBalanceEngineTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private BalanceEngine balanceEngine;
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+    @Autowired
+    private WalletExportService walletExportService;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private WalletOperationRepository walletOperationRepository;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void shardedMode_shouldBeSelectedByProperty() {
+        assertInstanceOf(ShardedBalanceEngine.class, balanceEngine);
+    }
+
+    @Test
+    void export_shouldRejectUpdatedAtWindow() throws Exception {
+        // updated_at в этом режиме отстаёт от операций: фильтр по нему пропускал бы кошельки
+        assertThrows(IllegalArgumentException.class,
+                () -> walletExportService.export(LocalDateTime.now().minusHours(1), null, new ByteArrayOutputStream()));
+        walletService.createWallet(new WalletRequestDTO("Exported"));
+        assertTrue(walletExportService.export(null, null, new ByteArrayOutputStream()) > 0);
+    }
+
+    @Test
+    void changeBalance_concurrentOperations_shouldBeExactAndPersisted() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("HotWallet")).id();
+        AtomicLong expected = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            futures.add(executor.submit(() -> {
+                long amount = ThreadLocalRandom.current().nextLong(1, 50);
+                boolean deposit = ThreadLocalRandom.current().nextBoolean();
+                if (walletService.changeBalance(walletId, operation(deposit ? OperationType.DEPOSIT : OperationType.WITHDRAW, amount)).isSuccess()) {
+                    expected.addAndGet(deposit ? amount : -amount);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, walletService.getWalletById(walletId).value().balance().compareTo(Money.of(expected.get())));
+
+        // updateWallet идёт мимо движка и читает строку из БД после сброса шарда
+        WalletUpdateRequestDTO update = new WalletUpdateRequestDTO();
+        update.setOwner("HotWallet");
+        assertEquals(0, walletService.updateWallet(walletId, update).balance().compareTo(Money.of(expected.get())));
+    }
+
+    @Test
+    void updateBalanceAndDelete_shouldRunInTransactionOnShardThread() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("AdjustedWallet")).id();
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 30));
+
+        assertEquals(Money.of(100), walletService.updateBalance(walletId, Money.of(100)).getBalance());
+        assertEquals(Money.of(110), walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 10)).value().balance());
+
+        UUID holdId = UUID.randomUUID();
+        WalletOperationRequestDTO hold = operation(OperationType.HOLD, 20);
+        hold.setHoldId(holdId);
+        assertEquals(Money.of(90), walletService.changeBalance(walletId, hold).value().available());
+
+        assertTrue(walletService.deleteWallet(walletId).isSuccess());
+        assertEquals(OperationResult.Status.NOT_FOUND, walletService.getWalletById(walletId).status());
+        assertFalse(walletHoldRepository.existsById(holdId));
+        assertEquals(OperationResult.Status.NOT_FOUND, walletService.deleteWallet(walletId).status());
+    }
+
+    @Test
+    void failedFlush_shouldNotFailAppliedOperations() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("UnflushedWallet")).id();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create trigger fail_flush before update on wallets for each row call '"
+                    + FailingFlush.class.getName() + "'");
+        }
+        try {
+            // больше batch-size (500): сброс по размеру пачки падает, но операции уже применены и подтверждаются
+            for (int i = 1; i <= 600; i++) {
+                assertEquals(Money.of(i), walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 1)).value().balance());
+            }
+        } finally {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("drop trigger fail_flush");
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (walletRepository.findById(walletId).orElseThrow().getSnapshotSeq() < 600 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(Money.of(600), walletRepository.findById(walletId).orElseThrow().getBalance());
+        assertEquals(600, walletOperationRepository.countByWalletId(walletId));
+    }
+
+    @Test
+    void changeBalance_shouldRejectWithdraw_whenInsufficientFunds() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("PoorWallet")).id();
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS,
+                walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 1)).status());
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+
+    public static final class FailingFlush implements Trigger {
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+            throw new SQLException("Database is unavailable");
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.BatchOperationItemDTO;
+import com.example.wallet.DTO.BatchOperationRequestDTO;
+import com.example.wallet.DTO.BatchOperationResponseDTO;
+import com.example.wallet.DTO.TransferRequestDTO;
+import com.example.wallet.DTO.WalletExportRowDTO;
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletPageDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.BatchOperationService;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletExportService;
+import com.example.wallet.service.WalletLockOrder;
+import com.example.wallet.service.WalletService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Три H2 в памяти как шарды; схема каждой создаётся её собственным прогоном Liquibase.
+ * Где лежит кошелёк, проверяется прямыми запросами к базам шардов.
+ */
+@SpringBootTest(properties = {
+        "wallet.datasource.shards.enabled=true",
+        "wallet.datasource.shards.urls=" + ShardingIntegrationTest.SHARD_URLS,
+        "spring.liquibase.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "wallet.outbox.relay.enabled=false",
+        "wallet.cache.enabled=false"})
+@ActiveProfiles("test")
+public class ShardingIntegrationTest {
+    static final String SHARD_URLS = "jdbc:h2:mem:shard-0;DB_CLOSE_DELAY=-1,"
+            + "jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1,"
+            + "jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private BatchOperationService batchOperationService;
+    @Autowired
+    private WalletExportService walletExportService;
+    @Autowired
+    private WalletShards walletShards;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void singleWalletOperations_shouldTouchOnlyTheWalletsShard() throws Exception {
+        assertEquals(3, walletShards.count());
+        for (int shard = 0; shard < 3; shard++) {
+            assertTrue(count(shard, "select count(*) from databasechangelog", null) > 0, "shard " + shard + " migrated");
+        }
+        Set<Integer> used = new HashSet<>();
+        List<UUID> wallets = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            UUID id = walletService.createWallet(new WalletRequestDTO("placed")).id();
+            wallets.add(id);
+            int home = walletShards.shardOf(id);
+            used.add(home);
+
+            OperationResult<WalletResponseDTO> deposited = walletService.changeBalance(id, operation(OperationType.DEPOSIT, 25));
+            assertEquals(Money.of(25), deposited.value().balance());
+            assertEquals(Money.of(25), walletService.getWalletById(id).value().balance());
+            for (int shard = 0; shard < 3; shard++) {
+                long expected = shard == home ? 1 : 0;
+                assertEquals(expected, count(shard, "select count(*) from wallets where id = ?", id));
+                assertEquals(expected, count(shard, "select count(*) from wallet_operations where wallet_id = ?", id));
+                assertEquals(expected, count(shard, "select count(*) from wallet_outbox where wallet_id = ?", id));
+            }
+        }
+        assertEquals(3, used.size());
+
+        // id журнала берутся блоками по 50: блоки разных шардов не должны пересекаться
+        for (int i = 0; i < 300; i++) {
+            assertTrue(walletService.changeBalance(wallets.get(i % wallets.size()), operation(OperationType.DEPOSIT, 1)).isSuccess());
+        }
+    }
+
+    @Test
+    void listAndExport_shouldMergeAllShards() throws Exception {
+        Set<UUID> created = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            created.add(walletService.createWallet(new WalletRequestDTO("merged")).id());
+        }
+
+        List<UUID> listed = new ArrayList<>();
+        UUID after = null;
+        do {
+            WalletPageDTO page = walletService.listWallets("merged", after, 7);
+            page.items().forEach(item -> listed.add(item.id()));
+            after = page.nextAfter();
+        } while (after != null);
+        assertEquals(created, new HashSet<>(listed));
+        List<UUID> sorted = new ArrayList<>(listed);
+        sorted.sort(WalletLockOrder.COMPARATOR);
+        assertEquals(sorted, listed);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        walletExportService.export(null, null, out);
+        Set<UUID> exported = new HashSet<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                assertTrue(exported.add(objectMapper.readValue(line, WalletExportRowDTO.class).id()));
+            }
+        }
+        assertTrue(exported.containsAll(created));
+    }
+
+    @Test
+    void crossShardTransfersAndAtomicBatches_shouldBeRejected() {
+        UUID first = walletService.createWallet(new WalletRequestDTO("cross")).id();
+        UUID second;
+        do {
+            second = walletService.createWallet(new WalletRequestDTO("cross")).id();
+        } while (walletShards.shardOf(second) == walletShards.shardOf(first));
+        walletService.changeBalance(first, operation(OperationType.DEPOSIT, 10));
+        UUID other = second;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.transfer(new TransferRequestDTO(first, other, Money.of(1))));
+        List<BatchOperationItemDTO> items = List.of(
+                new BatchOperationItemDTO(first, OperationType.WITHDRAW, Money.of(4)),
+                new BatchOperationItemDTO(other, OperationType.DEPOSIT, Money.of(4)));
+        assertThrows(IllegalArgumentException.class,
+                () -> batchOperationService.apply(new BatchOperationRequestDTO(true, items)));
+
+        BatchOperationResponseDTO applied = batchOperationService.apply(new BatchOperationRequestDTO(false, items));
+        assertTrue(applied.committed());
+        assertEquals(Money.of(6), applied.results().get(0).balance());
+        assertEquals(Money.of(4), applied.results().get(1).balance());
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+
+    private static long count(int shard, String sql, UUID id) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:shard-" + shard, "sa", "");
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (id != null) {
+                statement.setObject(1, id);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сравнение платформенных и виртуальных потоков Tomcat при 1k и 5k одновременных соединений.
+ * Каждый запрос — PATCH deposit на случайный кошелёк, т.е. почти всё время уходит на JDBC.
+ * Виртуальные потоки требуют Java 21+; на более старой JVM замер делается только для платформенных.
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=VirtualThreadLoadBenchmark
+ */
+@Tag("benchmark")
+public class VirtualThreadLoadBenchmark {
+    private static final int[] CONNECTIONS = {1_000, 5_000};
+    private static final int REQUESTS = 20_000;
+    private static final int WALLETS = 1_000;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        boolean virtualSupported = Runtime.version().feature() >= 21;
+        if (!virtualSupported) {
+            System.out.println("virtual threads need Java 21+, running on " + Runtime.version() + ": platform threads only");
+        }
+        for (int connections : CONNECTIONS) {
+            run(false, connections);
+            if (virtualSupported) {
+                run(true, connections);
+            }
+        }
+    }
+
+    private void run(boolean virtual, int connections) throws Exception {
+        String name = (virtual ? "virtual-" : "platform-") + connections;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                .profiles("test")
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--wallet.cache.enabled=false",
+                        "--logging.level.com.example.wallet=INFO",
+                        "--spring.datasource.url=jdbc:h2:mem:vt-" + name + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            WalletService walletService = context.getBean(WalletService.class);
+            List<UUID> wallets = new ArrayList<>(WALLETS);
+            for (int i = 0; i < WALLETS; i++) {
+                wallets.add(walletService.createWallet(new WalletRequestDTO("vt-" + i)).id());
+            }
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            Semaphore inFlight = new Semaphore(connections);
+            long[] latencies = new long[REQUESTS];
+            AtomicLong errors = new AtomicLong();
+            List<CompletableFuture<?>> futures = new ArrayList<>(REQUESTS);
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                UUID walletId = wallets.get(ThreadLocalRandom.current().nextInt(WALLETS));
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/" + walletId))
+                        .header("Content-Type", "application/json")
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"operationType\":\"DEPOSIT\",\"amount\":1}"))
+                        .timeout(Duration.ofSeconds(120))
+                        .build();
+                inFlight.acquire();
+                int index = i;
+                long sent = System.nanoTime();
+                futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, ex) -> {
+                            latencies[index] = System.nanoTime() - sent;
+                            if (ex != null || response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                            inFlight.release();
+                        }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("%s: %.0f req/s, p50=%d ms, p99=%d ms, errors=%d%n",
+                    name,
+                    REQUESTS / (elapsed / 1_000_000_000.0),
+                    latencies[REQUESTS / 2] / 1_000_000,
+                    latencies[REQUESTS * 99 / 100] / 1_000_000,
+                    errors.get());
+        }
+    }
+}
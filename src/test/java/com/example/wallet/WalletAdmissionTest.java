@@ -0,0 +1,179 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Шторм на один кошелёк не должен задевать остальные: UPDATE горячего кошелька держит блокировку
+ * строки 20 мс (H2-триггер), клиентов у него больше, чем соединений в пуле. Без допуска они занимают
+ * все соединения, и холодные кошельки ждут соединения (p99 вырастает на порядок); с лимитом
+ * на кошелёк отвергнутые клиенты ждут Retry-After, и p99 холодных остаётся на уровне прогона без шторма.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:admission;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "wallet.admission.per-wallet-limit=2",
+                "wallet.cache.enabled=false",
+                "logging.level.com.example.wallet=INFO"})
+@ActiveProfiles("test")
+public class WalletAdmissionTest {
+    private static final int COLD_WALLETS = 200;
+    private static final int COLD_CLIENTS = 4;
+    private static final int COLD_REQUESTS = 150;
+    // больше spring.datasource.hikari.maximum-pool-size
+    private static final int HOT_CLIENTS = 48;
+    static volatile UUID hotWallet;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    @Test
+    void hotWalletStorm_shouldNotRaiseColdWalletLatency() throws Exception {
+        List<UUID> cold = new ArrayList<>(COLD_WALLETS);
+        for (int i = 0; i < COLD_WALLETS; i++) {
+            cold.add(walletService.createWallet(new WalletRequestDTO("cold-" + i)).id());
+        }
+        hotWallet = walletService.createWallet(new WalletRequestDTO("hot")).id();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create trigger slow_hot_wallet before update on wallets for each row call '"
+                    + SlowHotWalletTrigger.class.getName() + "'");
+        }
+
+        coldP99(cold); // прогрев
+        long quiet = coldP99(cold);
+
+        AtomicBoolean storm = new AtomicBoolean(true);
+        AtomicLong hotAccepted = new AtomicLong();
+        AtomicLong hotRejected = new AtomicLong();
+        AtomicBoolean retryAfter = new AtomicBoolean(true);
+        ExecutorService hotClients = Executors.newFixedThreadPool(HOT_CLIENTS);
+        List<Future<?>> hot = new ArrayList<>();
+        for (int i = 0; i < HOT_CLIENTS; i++) {
+            hot.add(hotClients.submit(() -> {
+                while (storm.get()) {
+                    HttpResponse<Void> response = deposit(hotWallet);
+                    if (response.statusCode() == 200) {
+                        hotAccepted.incrementAndGet();
+                    } else {
+                        assertEquals(429, response.statusCode());
+                        long seconds = response.headers().firstValueAsLong("Retry-After").orElse(0);
+                        retryAfter.compareAndSet(true, seconds > 0);
+                        hotRejected.incrementAndGet();
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+                    }
+                }
+                return null;
+            }));
+        }
+        long stormed;
+        try {
+            Thread.sleep(500);
+            stormed = coldP99(cold);
+        } finally {
+            storm.set(false);
+            for (Future<?> future : hot) {
+                future.get();
+            }
+            hotClients.shutdown();
+        }
+
+        System.out.printf("cold p99: %d ms quiet, %d ms during storm; hot: %d accepted, %d rejected%n",
+                quiet, stormed, hotAccepted.get(), hotRejected.get());
+        assertTrue(hotAccepted.get() > 0);
+        assertTrue(hotRejected.get() > 0);
+        assertTrue(retryAfter.get());
+        assertTrue(meterRegistry.get("wallet.admission.rejected").tag("reason", "wallet").counter().count() > 0);
+        assertTrue(stormed <= quiet * 3 + 50, "cold p99 grew from " + quiet + " ms to " + stormed + " ms");
+    }
+
+    /**
+     * p99 в миллисекундах по COLD_CLIENTS клиентам, каждый делает COLD_REQUESTS пополнений случайных
+     * кошельков из своей доли холодных: клиенты не сходятся на одном кошельке и не упираются в его лимит.
+     */
+    private long coldP99(List<UUID> cold) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(COLD_CLIENTS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < COLD_CLIENTS; c++) {
+            List<UUID> own = cold.subList(c * cold.size() / COLD_CLIENTS, (c + 1) * cold.size() / COLD_CLIENTS);
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[COLD_REQUESTS];
+                for (int i = 0; i < COLD_REQUESTS; i++) {
+                    long start = System.nanoTime();
+                    HttpResponse<Void> response = deposit(own.get(ThreadLocalRandom.current().nextInt(own.size())));
+                    latencies[i] = System.nanoTime() - start;
+                    assertEquals(200, response.statusCode());
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[COLD_CLIENTS * COLD_REQUESTS];
+        for (int c = 0; c < COLD_CLIENTS; c++) {
+            System.arraycopy(futures.get(c).get(), 0, all, c * COLD_REQUESTS, COLD_REQUESTS);
+        }
+        clients.shutdown();
+        Arrays.sort(all);
+        return TimeUnit.NANOSECONDS.toMillis(all[(int) Math.ceil(all.length * 0.99) - 1]);
+    }
+
+    private HttpResponse<Void> deposit(UUID walletId) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/" + walletId))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"operationType\":\"DEPOSIT\",\"amount\":1}"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    public static final class SlowHotWalletTrigger implements Trigger {
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+            if (oldRow != null && Arrays.asList(oldRow).contains(hotWallet)) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
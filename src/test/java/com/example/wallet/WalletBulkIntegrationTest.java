@@ -0,0 +1,90 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.BulkCreateSummaryDTO;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.WalletRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1", "wallet.bulk.chunk-size=7"})
+@ActiveProfiles("test")
+public class WalletBulkIntegrationTest {
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void bulkCreate_fromCsv_shouldReturnIdsInInputOrderAndSummary() throws Exception {
+        StringBuilder csv = new StringBuilder("owner\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append("csv-").append(i).append(",ignored\n");
+        }
+        csv.append("\"csv, \"\"quoted\"\"\"\n");
+
+        List<JsonNode> lines = post("text/csv", csv.toString());
+        BulkCreateSummaryDTO summary = objectMapper.treeToValue(lines.remove(lines.size() - 1), BulkCreateSummaryDTO.class);
+
+        assertEquals(21, summary.created());
+        assertNull(summary.error());
+        assertEquals(21, lines.size());
+        for (int i = 0; i < 20; i++) {
+            Wallet wallet = walletRepository.findById(UUID.fromString(lines.get(i).get("id").asText())).orElseThrow();
+            assertEquals("csv-" + i, wallet.getOwner());
+            assertEquals(0, wallet.getBalance().signum());
+        }
+        UUID quoted = UUID.fromString(lines.get(20).get("id").asText());
+        assertEquals("csv, \"quoted\"", walletRepository.findById(quoted).orElseThrow().getOwner());
+    }
+
+    @Test
+    void bulkCreate_fromNdjson_shouldStopAtInvalidLine() throws Exception {
+        String ndjson = "{\"owner\":\"nd-1\"}\n{\"owner\":\"nd-2\"}\n{\"name\":\"broken\"}\n{\"owner\":\"nd-4\"}\n";
+
+        List<JsonNode> lines = post("application/x-ndjson", ndjson);
+        BulkCreateSummaryDTO summary = objectMapper.treeToValue(lines.remove(lines.size() - 1), BulkCreateSummaryDTO.class);
+
+        assertEquals(2, summary.created());
+        assertNotNull(summary.error());
+        assertTrue(summary.error().startsWith("line 3"));
+        assertEquals(2, lines.size());
+        assertTrue(walletRepository.findByOwner("nd-4").isEmpty());
+    }
+
+    private List<JsonNode> post(String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/bulk"))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : response.body().split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+}
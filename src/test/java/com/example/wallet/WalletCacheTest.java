@@ -0,0 +1,106 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.DTO.WalletUpdateRequestDTO;
+import com.example.wallet.config.ReadYourWrites;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.WalletCache;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WalletCacheTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private WalletCache walletCache;
+
+    @Test
+    void cacheMiss_shouldBeLoadedFromPrimary() {
+        AtomicBoolean onPrimary = new AtomicBoolean();
+        WalletResponseDTO loaded = new WalletResponseDTO(UUID.randomUUID(), "Replicated", Money.of(1));
+        walletCache.get(loaded.id(), id -> {
+            onPrimary.set(ReadYourWrites.isPinnedToPrimary());
+            return loaded;
+        });
+        assertTrue(onPrimary.get());
+        assertFalse(ReadYourWrites.isPinnedToPrimary());
+    }
+
+    @Test
+    void getWalletById_shouldNeverReturnBalanceOlderThanCommittedWrite() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("CachedUser")).id();
+        WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+        deposit.setOperationType(OperationType.DEPOSIT);
+        deposit.setAmount(Money.of(1));
+
+        // committed — число депозитов, о завершении которых уже известно
+        AtomicLong committed = new AtomicLong();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(executor.submit(() -> {
+                while (writing.get()) {
+                    long before = committed.get();
+                    Money seen = walletService.getWalletById(walletId).value().balance();
+                    assertTrue(!seen.isLessThan(Money.of(before)), "stale read: " + seen + " < " + before);
+                }
+            }));
+        }
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                walletService.changeBalance(walletId, deposit);
+                committed.incrementAndGet();
+            }
+            writing.set(false);
+        });
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        assertEquals(0, walletService.getWalletById(walletId).value().balance().compareTo(Money.of(200)));
+    }
+
+    @Test
+    void getWalletById_shouldServeRepeatedReadsFromCache_andReflectOwnerChange() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("HitUser")).id();
+        double hitsBefore = meterRegistry.get("cache.gets").tag("cache", "wallets").tag("result", "hit").functionCounter().count();
+
+        walletService.getWalletById(walletId);
+        walletService.getWalletById(walletId);
+        walletService.getWalletById(walletId);
+
+        double hits = meterRegistry.get("cache.gets").tag("cache", "wallets").tag("result", "hit").functionCounter().count();
+        assertTrue(hits - hitsBefore >= 2);
+
+        WalletUpdateRequestDTO update = new WalletUpdateRequestDTO();
+        update.setOwner("RenamedUser");
+        walletService.updateWallet(walletId, update);
+        assertEquals("RenamedUser", walletService.getWalletById(walletId).value().owner());
+    }
+}
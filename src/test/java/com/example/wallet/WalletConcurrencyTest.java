@@ -0,0 +1,65 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WalletConcurrencyTest {
+    private static final int OPERATIONS = 4000;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Test
+    void changeBalance_concurrentMixedOperations_shouldKeepExactBalance() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("ConcurrentUser")).id();
+        walletService.updateBalance(walletId, Money.of(1000));
+
+        AtomicLong expected = new AtomicLong(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            futures.add(executor.submit(() -> {
+                long amount = ThreadLocalRandom.current().nextLong(1, 50);
+                boolean deposit = ThreadLocalRandom.current().nextBoolean();
+                WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+                dto.setOperationType(deposit ? OperationType.DEPOSIT : OperationType.WITHDRAW);
+                dto.setAmount(Money.of(amount));
+                if (walletService.changeBalance(walletId, dto).isSuccess()) {
+                    expected.addAndGet(deposit ? amount : -amount);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Money actual = walletService.getWalletById(walletId).value().balance();
+        assertEquals(0, actual.compareTo(Money.of(expected.get())));
+        assertTrue(actual.signum() >= 0);
+    }
+}
@@ -1,9 +1,17 @@
 package com.example.wallet;
 import com.example.wallet.DTO.*;
 import com.example.wallet.controller.WalletController;
-import com.example.wallet.exception.WalletNotFoundException;
+import com.example.wallet.exception.IdempotencyConflictException;
+import com.example.wallet.exception.WalletOverloadedException;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.model.Money;
 import com.example.wallet.model.OperationType;
 import com.example.wallet.model.Wallet;
+import com.example.wallet.service.BatchOperationService;
+import com.example.wallet.service.IdempotencyService;
+import com.example.wallet.service.WalletAdmission;
+import com.example.wallet.service.WalletBulkService;
+import com.example.wallet.service.WalletExportService;
 import com.example.wallet.service.WalletService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,8 +25,8 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.math.BigDecimal;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -33,17 +41,28 @@ public class WalletControllerTest {
     private MockMvc mockMvc;
     @MockitoBean
     private WalletService walletService;
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+    @MockitoBean
+    private BatchOperationService batchOperationService;
+    @MockitoBean
+    private WalletExportService walletExportService;
+    @MockitoBean
+    private WalletBulkService walletBulkService;
+    @MockitoBean
+    private WalletAdmission walletAdmission;
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
+        when(walletAdmission.admit(any(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
     }
     @Test
     @DisplayName("POST /api/wallets - Успешное создание кошелька")
     void createWallet_success() throws Exception {
         UUID id = UUID.randomUUID();
-        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "TestUser", BigDecimal.ZERO);
+        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "TestUser", Money.ZERO);
         when(walletService.createWallet(any(WalletRequestDTO.class))).thenReturn(responseDTO);
         String jsonRequest = """
             {
@@ -63,8 +82,8 @@ public class WalletControllerTest {
     @DisplayName("GET /api/wallets/{id} - Получение кошелька по ID")
     void getWalletById_success() throws Exception {
         UUID id = UUID.randomUUID();
-        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "TestUser", BigDecimal.valueOf(100));
-        when(walletService.getWalletById(id)).thenReturn(responseDTO);
+        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "TestUser", Money.of(100));
+        when(walletService.getWalletById(id)).thenReturn(OperationResult.success(responseDTO));
         mockMvc.perform(get("/api/wallets/{id}", id))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id.toString()))
@@ -76,7 +95,7 @@ public class WalletControllerTest {
     void deleteWallet_success() throws Exception {
         UUID id = UUID.randomUUID();
 
-        Mockito.doNothing().when(walletService).deleteWallet(id);
+        when(walletService.deleteWallet(id)).thenReturn(OperationResult.success(null));
 
         mockMvc.perform(delete("/api/wallets/{id}", id))
                 .andExpect(status().isNoContent());
@@ -85,15 +104,18 @@ public class WalletControllerTest {
     @DisplayName("PUT /api/wallets/{id}/balance - Успешное обновление баланса")
     void updateBalance_success()throws Exception {
         UUID id = UUID.randomUUID();
-        Wallet updateWallet = new Wallet(id, BigDecimal.valueOf(500));
+        Wallet updateWallet = new Wallet(id, Money.of(500));
         updateWallet.setOwner("UserA");
-        when(walletService.updateBalance(eq(id), eq(BigDecimal.valueOf(500))))
+        when(walletService.updateBalance(eq(id), eq(Money.of(500))))
                 .thenReturn(updateWallet);
         mockMvc.perform(put("/api/wallets/{id}/balance", id)
                         .param("balance", "500"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(id.toString()))
-                .andExpect(jsonPath("$.balance").value(500));
+                .andExpect(jsonPath("$.balance").value(500))
+                .andExpect(jsonPath("$.available").value(500))
+                .andExpect(jsonPath("$.new").doesNotExist())
+                .andExpect(jsonPath("$.snapshotSeq").doesNotExist());
 
     }
     @Test
@@ -102,12 +124,12 @@ public class WalletControllerTest {
         UUID id = UUID.randomUUID();
         WalletOperationRequestDTO requestDTO = new WalletOperationRequestDTO();
         requestDTO.setOperationType(OperationType.DEPOSIT);
-        requestDTO.setAmount(BigDecimal.valueOf(100));
+        requestDTO.setAmount(Money.of(100));
 
-        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "UserB", BigDecimal.valueOf(200));
+        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "UserB", Money.of(200));
 
         when(walletService.changeBalance(eq(id), any(WalletOperationRequestDTO.class)))
-                .thenReturn(responseDTO);
+                .thenReturn(OperationResult.success(responseDTO));
 
         String jsonRequest = """
         {
@@ -131,7 +153,7 @@ public class WalletControllerTest {
         WalletUpdateRequestDTO updateRequest = new WalletUpdateRequestDTO();
         updateRequest.setOwner("NewOwner");
 
-        WalletResponseDTO updatedWallet = new WalletResponseDTO(id, "NewOwner", BigDecimal.valueOf(300));
+        WalletResponseDTO updatedWallet = new WalletResponseDTO(id, "NewOwner", Money.of(300));
 
         when(walletService.updateWallet(eq(id), any(WalletUpdateRequestDTO.class)))
                 .thenReturn(updatedWallet);
@@ -153,36 +175,38 @@ public class WalletControllerTest {
     @Test
     void getWalletById_shouldReturn404_whenWalletNotFound() throws Exception {
         UUID id = UUID.randomUUID();
-        when(walletService.getWalletById(id)).thenThrow(new WalletNotFoundException("Wallet with id " + id + " not found"));
+        when(walletService.getWalletById(id)).thenReturn(OperationResult.notFound());
 
         mockMvc.perform(get("/api/wallets/" + id))
                 .andExpect(status().isNotFound())
-                .andExpect(jsonPath("$.message").value("Wallet with id " + id + " not found"))
+                .andExpect(jsonPath("$.message").value("Wallet not found"))
                 .andExpect(jsonPath("$.status").value(404));
     }
     @Test
-    void changeBalance_shouldReturn400_whenInsufficientFunds() throws Exception {
+    void changeBalance_shouldReturn409_whenInsufficientFunds() throws Exception {
         UUID id = UUID.randomUUID();
         WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
         dto.setOperationType(OperationType.WITHDRAW);
-        dto.setAmount(BigDecimal.valueOf(100));
+        dto.setAmount(Money.of(100));
 
-        when(walletService.changeBalance(eq(id), any())).thenThrow(new RuntimeException("Insufficient funds"));
+        when(walletService.changeBalance(eq(id), any())).thenReturn(OperationResult.insufficientFunds());
 
         mockMvc.perform(patch("/api/wallets/" + id)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(dto)))
-                .andExpect(status().isBadRequest())
+                .andExpect(status().isConflict())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value(409))
                 .andExpect(jsonPath("$.message").value("Insufficient funds"));
     }
     @Test
-    void deleteWallet_shouldReturn400_whenWalletNotFound() throws Exception {
+    void deleteWallet_shouldReturn404_whenWalletNotFound() throws Exception {
         UUID id = UUID.randomUUID();
 
-        doThrow(new RuntimeException("Wallet not found")).when(walletService).deleteWallet(id);
+        when(walletService.deleteWallet(id)).thenReturn(OperationResult.notFound());
 
         mockMvc.perform(delete("/api/wallets/" + id))
-                .andExpect(status().isBadRequest())
+                .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message").value("Wallet not found"));
     }
     @Test
@@ -190,7 +214,7 @@ public class WalletControllerTest {
         UUID id = UUID.randomUUID();
         WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
         dto.setOperationType(OperationType.DEPOSIT);
-        dto.setAmount(BigDecimal.valueOf(10));
+        dto.setAmount(Money.of(10));
 
         when(walletService.changeBalance(eq(id), any())).thenThrow(new NullPointerException("Something went wrong"));
 
@@ -211,8 +235,109 @@ public class WalletControllerTest {
                 .andExpect(jsonPath("$.message").exists())
                 .andExpect(jsonPath("$.status").value(400));
     }
+    @Test
+    void changeBalance_withIdempotencyKey_shouldGoThroughIdempotencyService() throws Exception {
+        UUID id = UUID.randomUUID();
+        WalletResponseDTO responseDTO = new WalletResponseDTO(id, "UserB", Money.of(200));
+        when(idempotencyService.execute(eq(id), eq("retry-1"), any())).thenReturn(OperationResult.success(responseDTO));
 
-}
+        mockMvc.perform(patch("/api/wallets/{id}", id)
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operationType\": \"DEPOSIT\", \"amount\": 100}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(200));
+        Mockito.verify(walletService, Mockito.never()).changeBalance(any(), any());
+    }
+    @Test
+    void changeBalance_shouldReturn409_whenIdempotentRequestInProgress() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(idempotencyService.execute(eq(id), eq("retry-2"), any()))
+                .thenThrow(new IdempotencyConflictException("Request with this Idempotency-Key is still in progress"));
 
+        mockMvc.perform(patch("/api/wallets/{id}", id)
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operationType\": \"DEPOSIT\", \"amount\": 100}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409));
+    }
+    @Test
+    void changeBalance_shouldReturn429WithRetryAfter_whenNotAdmitted() throws Exception {
+        UUID id = UUID.randomUUID();
+        doThrow(new WalletOverloadedException("Too many concurrent operations on wallet " + id, 1))
+                .when(walletAdmission).admit(eq(id), any());
 
+        mockMvc.perform(patch("/api/wallets/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operationType\": \"DEPOSIT\", \"amount\": 100}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value(429));
+        Mockito.verify(walletService, Mockito.never()).changeBalance(any(), any());
+    }
+    @Test
+    void applyBatch_shouldReturn409_whenAtomicBatchRolledBack() throws Exception {
+        UUID id = UUID.randomUUID();
+        BatchOperationResponseDTO response = new BatchOperationResponseDTO(false,
+                java.util.List.of(new BatchItemResultDTO(id, BatchItemStatus.INSUFFICIENT_FUNDS, Money.ZERO)));
+        when(batchOperationService.apply(any(BatchOperationRequestDTO.class))).thenReturn(response);
+
+        mockMvc.perform(post("/api/wallets/operations:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"atomic\": true, \"operations\": [{\"walletId\": \"" + id
+                                + "\", \"operationType\": \"WITHDRAW\", \"amount\": 10}]}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[0].status").value("INSUFFICIENT_FUNDS"));
+    }
+    @Test
+    void applyBatch_shouldReturn400_whenOperationsEmpty() throws Exception {
+        mockMvc.perform(post("/api/wallets/operations:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"atomic\": false, \"operations\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transfer_shouldReturnBothBalances() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        TransferResponseDTO response = new TransferResponseDTO(
+                new WalletResponseDTO(from, "A", Money.of(70)),
+                new WalletResponseDTO(to, "B", Money.of(30)));
+        when(walletService.transfer(any(TransferRequestDTO.class))).thenReturn(OperationResult.success(response));
+
+        mockMvc.perform(post("/api/wallets/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromWalletId\": \"" + from + "\", \"toWalletId\": \"" + to + "\", \"amount\": 30}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from.balance").value(70))
+                .andExpect(jsonPath("$.to.balance").value(30));
+    }
+    @Test
+    void transfer_shouldReturn400_whenAmountNotPositive() throws Exception {
+        mockMvc.perform(post("/api/wallets/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromWalletId\": \"" + UUID.randomUUID() + "\", \"toWalletId\": \""
+                                + UUID.randomUUID() + "\", \"amount\": 0}"))
+                .andExpect(status().isBadRequest());
+    }
 
+    @Test
+    void changeBalance_shouldReturn400_whenAmountHasMoreThanTwoDecimalPlaces() throws Exception {
+        mockMvc.perform(patch("/api/wallets/{id}", UUID.randomUUID())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operationType\": \"DEPOSIT\", \"amount\": 10.555}"))
+                .andExpect(status().isBadRequest());
+    }
+    @Test
+    void getWallet_shouldRenderBalanceWithTwoDecimalPlaces() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(walletService.getWalletById(id)).thenReturn(OperationResult.success(new WalletResponseDTO(id, "TestUser", Money.ofMinor(1205))));
+        mockMvc.perform(get("/api/wallets/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("\"balance\":12.05")));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.DTO.WalletUpdateRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.WalletService;
+import com.example.wallet.service.WalletSubscriptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:events;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+public class WalletEventsIntegrationTest {
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private WalletSubscriptions walletSubscriptions;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void events_shouldPushCurrentStateThenChangesAndCloseOnDelete() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("sse")).id();
+        HttpResponse<InputStream> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/" + walletId + "/events")).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            assertEquals(Money.ZERO, nextState(events).balance());
+
+            walletService.changeBalance(walletId, deposit(7));
+            assertEquals(Money.of(7), nextState(events).balance());
+
+            WalletUpdateRequestDTO rename = new WalletUpdateRequestDTO();
+            rename.setOwner("sse-renamed");
+            walletService.updateWallet(walletId, rename);
+            assertEquals("sse-renamed", nextState(events).owner());
+
+            walletService.deleteWallet(walletId);
+            assertNull(nextState(events));
+        }
+        awaitNoSubscribers(walletId);
+    }
+
+    @Test
+    void events_shouldCoalesceBurstToLatestState() throws Exception {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("sse-burst")).id();
+        HttpResponse<InputStream> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/" + walletId + "/events")).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            nextState(events);
+            for (int i = 0; i < 50; i++) {
+                walletService.changeBalance(walletId, deposit(1));
+            }
+            // промежуточные состояния могут быть пропущены, последнее — нет
+            WalletResponseDTO state;
+            do {
+                state = nextState(events);
+            } while (!state.balance().equals(Money.of(50)));
+        }
+    }
+
+    @Test
+    void events_shouldReturnNotFoundForUnknownWallet() throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/wallets/" + UUID.randomUUID() + "/events")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(404, response.statusCode());
+    }
+
+    private WalletResponseDTO nextState(BufferedReader events) throws Exception {
+        CompletableFuture<WalletResponseDTO> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                String line;
+                while ((line = events.readLine()) != null) {
+                    if (line.startsWith("data:")) {
+                        return objectMapper.readValue(line.substring(5), WalletResponseDTO.class);
+                    }
+                }
+                return null;
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        return next.get(10, TimeUnit.SECONDS);
+    }
+
+    private void awaitNoSubscribers(UUID walletId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (walletSubscriptions.subscriberCount(walletId) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, walletSubscriptions.subscriberCount(walletId));
+    }
+
+    private static WalletOperationRequestDTO deposit(long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(OperationType.DEPOSIT);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletExportRowDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.service.WalletService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1", "wallet.export.fetch-size=7"})
+@ActiveProfiles("test")
+public class WalletExportIntegrationTest {
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void export_shouldStreamEveryWalletAsNdjson_plainAndGzipped() throws Exception {
+        Set<UUID> created = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            created.add(walletService.createWallet(new WalletRequestDTO("export-" + i)).id());
+        }
+
+        HttpResponse<InputStream> plain = get("/api/wallets/export");
+        assertEquals(200, plain.statusCode());
+        assertTrue(plain.headers().firstValue("Content-Type").orElseThrow().startsWith("application/x-ndjson"));
+        assertTrue(read(plain.body()).containsAll(created));
+
+        HttpResponse<InputStream> gzipped = get("/api/wallets/export?gzip=true");
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElseThrow());
+        assertTrue(read(new GZIPInputStream(gzipped.body())).containsAll(created));
+    }
+
+    @Test
+    void export_shouldReturnOnlyWalletsUpdatedInRange() throws Exception {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+        UUID fresh = walletService.createWallet(new WalletRequestDTO("export-fresh")).id();
+
+        Set<UUID> exported = read(get("/api/wallets/export?updatedFrom=" + before).body());
+        assertTrue(exported.contains(fresh));
+
+        assertEquals(Set.of(), read(get("/api/wallets/export?updatedTo=" + before.minusDays(1)).body()));
+    }
+
+    private HttpResponse<InputStream> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private Set<UUID> read(InputStream body) throws Exception {
+        Set<UUID> ids = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ids.add(objectMapper.readValue(line, WalletExportRowDTO.class).id());
+            }
+        }
+        return ids;
+    }
+}
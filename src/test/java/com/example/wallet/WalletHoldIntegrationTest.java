@@ -0,0 +1,175 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.LedgerEntryType;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletHold;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.WalletHoldRepository;
+import com.example.wallet.repository.WalletOperationRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletHoldService;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Холды: резерв уменьшает доступное, capture и release, истечение колесом таймеров
+ * (оборот колеса — 800 мс, короче части TTL) и загрузка холдов, оставшихся от прошлого запуска.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:holds;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "wallet.holds.tick-ms=50",
+        "wallet.holds.wheel-size=16",
+        "wallet.holds.expiry-batch-size=100"})
+@ActiveProfiles("test")
+public class WalletHoldIntegrationTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private WalletHoldService walletHoldService;
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+    @Autowired
+    private WalletOperationRepository walletOperationRepository;
+
+    @Test
+    void holdCaptureRelease_shouldKeepAvailableBalance() {
+        UUID wallet = createWallet(100);
+        UUID first = UUID.randomUUID();
+
+        WalletResponseDTO held = operation(wallet, OperationType.HOLD, first, 60, null).value();
+        assertEquals(Money.of(100), held.balance());
+        assertEquals(Money.of(40), held.available());
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS, operation(wallet, OperationType.WITHDRAW, null, 50, null).status());
+        assertEquals(OperationResult.Status.INSUFFICIENT_FUNDS, operation(wallet, OperationType.HOLD, UUID.randomUUID(), 50, null).status());
+        // повтор HOLD с тем же id не резервирует второй раз
+        assertEquals(Money.of(40), operation(wallet, OperationType.HOLD, first, 60, null).value().available());
+
+        WalletResponseDTO captured = operation(wallet, OperationType.CAPTURE, first, 45, null).value();
+        assertEquals(Money.of(55), captured.balance());
+        assertEquals(Money.of(55), captured.available());
+        assertEquals(OperationResult.Status.NOT_FOUND, operation(wallet, OperationType.RELEASE, first, 0, null).status());
+
+        UUID second = UUID.randomUUID();
+        assertEquals(Money.of(25), operation(wallet, OperationType.HOLD, second, 30, null).value().available());
+        assertEquals(Money.of(55), operation(wallet, OperationType.RELEASE, second, 0, null).value().available());
+
+        Wallet row = walletRepository.findById(wallet).orElseThrow();
+        assertEquals(Money.of(55), row.getBalance());
+        assertEquals(Money.ZERO, row.getHeld());
+        List<WalletOperation> ledger = walletOperationRepository.findAll().stream()
+                .filter(entry -> entry.getWalletId().equals(wallet))
+                .toList();
+        assertTrue(ledger.stream().anyMatch(entry -> entry.getOperationType() == LedgerEntryType.CAPTURE
+                && entry.getDelta().equals(Money.of(-45))));
+        assertEquals(row.getSnapshotSeq(), ledger.size());
+    }
+
+    @Test
+    void expiredHolds_shouldBeReleasedInBatches() {
+        List<UUID> wallets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UUID wallet = createWallet(1000);
+            wallets.add(wallet);
+            for (int h = 0; h < 120; h++) {
+                operation(wallet, OperationType.HOLD, UUID.randomUUID(), 1, 1L);
+            }
+        }
+        UUID longHold = UUID.randomUUID();
+        LocalDateTime started = LocalDateTime.now();
+        operation(wallets.get(0), OperationType.HOLD, longHold, 5, 3L);
+
+        await(() -> walletHoldRepository.count() == 1);
+        assertTrue(walletHoldRepository.existsById(longHold));
+        assertEquals(Money.of(5), walletRepository.findById(wallets.get(0)).orElseThrow().getHeld());
+        assertEquals(Money.of(1000), walletService.getWalletById(wallets.get(1)).value().available());
+
+        await(() -> walletHoldRepository.count() == 0);
+        assertFalse(LocalDateTime.now().isBefore(started.plusSeconds(3)));
+        assertEquals(Money.of(1000), walletService.getWalletById(wallets.get(0)).value().available());
+    }
+
+    @Test
+    void holdsLeftFromPreviousRun_shouldExpireAfterLoad() {
+        UUID wallet = createWallet(100);
+        // состояние после рестарта: строки есть, в колесе их нет, срок истёк во время простоя
+        Wallet row = walletRepository.findById(wallet).orElseThrow();
+        row.setHeld(Money.of(70));
+        walletRepository.save(row);
+        LocalDateTime now = LocalDateTime.now();
+        walletHoldRepository.save(new WalletHold(UUID.randomUUID(), wallet, Money.of(70), now.minusHours(1), now.minusSeconds(1)));
+        assertEquals(Money.of(30), walletService.getWalletById(wallet).value().available());
+
+        walletHoldService.run(null);
+
+        await(() -> walletHoldRepository.count() == 0);
+        assertEquals(Money.ZERO, walletRepository.findById(wallet).orElseThrow().getHeld());
+        assertEquals(Money.of(100), walletService.getWalletById(wallet).value().available());
+    }
+
+    @Test
+    void captureOfExpiredHold_shouldReleaseAndRefreshCachedWallet() {
+        UUID wallet = createWallet(100);
+        // истёкший холд, до которого колесо ещё не дошло
+        Wallet row = walletRepository.findById(wallet).orElseThrow();
+        row.setHeld(Money.of(70));
+        walletRepository.save(row);
+        LocalDateTime now = LocalDateTime.now();
+        UUID holdId = UUID.randomUUID();
+        walletHoldRepository.save(new WalletHold(holdId, wallet, Money.of(70), now.minusHours(1), now.minusSeconds(1)));
+        assertEquals(Money.of(30), walletService.getWalletById(wallet).value().available());
+
+        assertEquals(OperationResult.Status.NOT_FOUND, operation(wallet, OperationType.CAPTURE, holdId, 0, null).status());
+
+        assertFalse(walletHoldRepository.existsById(holdId));
+        assertEquals(Money.of(100), walletService.getWalletById(wallet).value().available());
+    }
+
+    private UUID createWallet(long balance) {
+        UUID wallet = walletService.createWallet(new WalletRequestDTO("holds")).id();
+        operation(wallet, OperationType.DEPOSIT, null, balance, null);
+        return wallet;
+    }
+
+    private OperationResult<WalletResponseDTO> operation(UUID wallet, OperationType type, UUID holdId, long amount, Long ttlSeconds) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        dto.setHoldId(holdId);
+        dto.setTtlSeconds(ttlSeconds);
+        return walletService.changeBalance(wallet, dto);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.wallet;
+
+import com.example.wallet.model.WalletIds;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Вставка ROWS кошельков с id v4 и v7 пачками по BATCH: строк в секунду и размер первичного ключа.
+ * По умолчанию — файловая H2 (размер — весь файл БД после вставки, данные в обоих прогонах одинаковы,
+ * разница приходится на индекс). С -Dbenchmark.url=jdbc:postgresql://... (и .user/.password)
+ * размер берётся из pg_relation_size индекса.
+ * Запуск: ./mvnw test -Pbenchmark -Dtest=WalletIdBenchmark [-Dbenchmark.rows=2000000]
+ */
+@Tag("benchmark")
+public class WalletIdBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int BATCH = 5000;
+
+    @Test
+    void compareV4AndV7Inserts() throws Exception {
+        for (WalletIds.Version version : WalletIds.Version.values()) {
+            run(version);
+        }
+    }
+
+    private void run(WalletIds.Version version) throws Exception {
+        String url = System.getProperty("benchmark.url");
+        Path dir = null;
+        if (url == null) {
+            dir = Files.createTempDirectory("wallet-ids");
+            url = "jdbc:h2:file:" + dir.resolve("bench");
+        }
+        String table = "bench_wallets_" + version.name().toLowerCase();
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.user", "sa"), System.getProperty("benchmark.password", ""))) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("drop table if exists " + table);
+                statement.execute("create table " + table + " (id uuid primary key, balance bigint not null, "
+                        + "created_at timestamp not null, updated_at timestamp not null, owner varchar(255) not null, "
+                        + "snapshot_seq bigint not null)");
+            }
+            connection.setAutoCommit(false);
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            long start = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement("insert into " + table
+                    + " (id, balance, created_at, updated_at, owner, snapshot_seq) values (?, 0, ?, ?, ?, 0)")) {
+                for (int i = 1; i <= ROWS; i++) {
+                    insert.setObject(1, WalletIds.next(version));
+                    insert.setTimestamp(2, now);
+                    insert.setTimestamp(3, now);
+                    insert.setString(4, "owner-" + (i % 10_000));
+                    insert.addBatch();
+                    if (i % BATCH == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %d rows in %.1f s, %.0f rows/s%n", version, ROWS, seconds, ROWS / seconds);
+            if (dir == null) {
+                System.out.printf("%s: pkey %d KiB%n", version, pkeySize(connection, table) / 1024);
+            }
+            if (dir == null) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("drop table " + table);
+                }
+            }
+        }
+        if (dir != null) {
+            System.out.printf("%s: H2 file %d KiB%n", version, Files.size(dir.resolve("bench.mv.db")) / 1024);
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static long pkeySize(Connection connection, String table) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select pg_relation_size('" + table + "_pkey')")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.wallet;
+
+import com.example.wallet.model.WalletIds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WalletIdsTest {
+
+    @Test
+    void v7_shouldCarryVersionVariantAndCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID id = WalletIds.v7();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        // при всплеске генерации метка может забежать вперёд, но не назад
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 1000, String.valueOf(millis));
+    }
+
+    @Test
+    void v7_shouldBeStrictlyIncreasingInUnsignedByteOrder() {
+        UUID prev = WalletIds.v7();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = WalletIds.v7();
+            assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), prev.getMostSignificantBits()) > 0);
+            prev = next;
+        }
+    }
+
+    @Test
+    void v7_shouldBeUniqueAcrossThreads() throws Exception {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        ids.add(WalletIds.v7());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(160_000, ids.size());
+    }
+
+    @Test
+    void parseVersion_shouldAcceptNumberOrPrefixedName() {
+        assertEquals(WalletIds.Version.V4, WalletIds.parseVersion("4"));
+        assertEquals(WalletIds.Version.V7, WalletIds.parseVersion("V7"));
+        assertEquals(4, WalletIds.next(WalletIds.Version.V4).version());
+        assertThrows(IllegalArgumentException.class, () -> WalletIds.parseVersion("1"));
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.wallet;
 
+import com.example.wallet.DTO.WalletPageDTO;
 import com.example.wallet.DTO.WalletRequestDTO;
 import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,7 +12,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -37,7 +42,7 @@ public class WalletIntegrationTest {
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("IntegrationUser", response.getBody().owner());
-        assertEquals(BigDecimal.ZERO, response.getBody().balance());
+        assertEquals(Money.ZERO, response.getBody().balance());
         assertNotNull(response.getBody().id());
     }
     @Test
@@ -60,7 +65,28 @@ public class WalletIntegrationTest {
         assertEquals(HttpStatus.OK, getResponse.getStatusCode());
         assertNotNull(getResponse.getBody());
         assertEquals("GetTestUser", getResponse.getBody().owner());
-        assertEquals(0, getResponse.getBody().balance().compareTo(BigDecimal.ZERO));
+        assertEquals(0, getResponse.getBody().balance().compareTo(Money.ZERO));
         assertEquals(walletId, getResponse.getBody().id());
     }
+    @Test
+    void listWallets_shouldPageThroughOwnerWalletsWithoutGapsOrDuplicates() {
+        Set<UUID> created = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("PagedOwner"), WalletResponseDTO.class)
+                    .getBody().id());
+        }
+        restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("OtherOwner"), WalletResponseDTO.class);
+
+        List<UUID> seen = new ArrayList<>();
+        String url = "/api/wallets?owner=PagedOwner&limit=2";
+        WalletPageDTO page;
+        do {
+            page = restTemplate.getForObject(url, WalletPageDTO.class);
+            page.items().forEach(wallet -> seen.add(wallet.id()));
+            url = "/api/wallets?owner=PagedOwner&limit=2&after=" + page.nextAfter();
+        } while (page.nextAfter() != null);
+
+        assertEquals(created, new HashSet<>(seen));
+        assertEquals(5, seen.size());
+    }
 }
@@ -0,0 +1,218 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.DTO.WalletResponseDTO;
+import com.example.wallet.model.Money;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный прогон через HTTP: смесь создания, чтения, пополнений и списаний,
+ * кошельки выбираются по закону Ципфа (несколько "горячих" кошельков получают большую часть операций).
+ * Печатает p50/p99/p999, пропускную способность и ошибки по типам операций, а в конце сверяет
+ * ожидаемые и фактические балансы — расхождение означает потерянное обновление.
+ * <p>
+ * Запуск: ./mvnw test -Pload [-Dload.duration-seconds=30 -Dload.threads=32 -Dload.wallets=100
+ * -Dload.zipf-exponent=1.1 -Dload.mix=create:5,read:45,deposit:30,withdraw:20 -Dwallet.engine.mode=sharded]
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "logging.level.com.example.wallet=INFO"})
+@ActiveProfiles("test")
+public class WalletLoadTest {
+    private static final long INITIAL_BALANCE = 1000;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private enum Operation { CREATE, READ, DEPOSIT, WITHDRAW }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void mixedLoad_shouldNotLoseUpdates() throws Exception {
+        int durationSeconds = Integer.getInteger("load.duration-seconds", 20);
+        int threads = Integer.getInteger("load.threads", 16);
+        int walletCount = Integer.getInteger("load.wallets", 100);
+        double zipfExponent = Double.parseDouble(System.getProperty("load.zipf-exponent", "1.1"));
+        Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "create:5,read:45,deposit:30,withdraw:20"));
+
+        UUID[] wallets = new UUID[walletCount];
+        AtomicLongArray expected = new AtomicLongArray(walletCount);
+        for (int i = 0; i < walletCount; i++) {
+            wallets[i] = restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("load-" + i), WalletResponseDTO.class)
+                    .getBody().id();
+            restTemplate.put("/api/wallets/" + wallets[i] + "/balance?balance=" + INITIAL_BALANCE, null);
+            expected.set(i, Money.of(INITIAL_BALANCE).minorUnits());
+        }
+
+        ZipfSampler sampler = new ZipfSampler(walletCount, zipfExponent);
+        Operation[] schedule = schedule(mix);
+        Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+        AtomicLong rejected = new AtomicLong();
+        // кошельки, для которых исход хотя бы одной операции неизвестен, в сверку не попадают
+        Set<Integer> uncertain = ConcurrentHashMap.newKeySet();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>(threads);
+        long started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Operation operation = schedule[random.nextInt(schedule.length)];
+                    int index = sampler.next(random.nextDouble());
+                    long amount = random.nextLong(1, 10_000);
+                    long sent = System.nanoTime();
+                    HttpStatusCode status;
+                    try {
+                        status = execute(operation, wallets[index], amount);
+                    } catch (RuntimeException ex) {
+                        status = HttpStatus.SERVICE_UNAVAILABLE;
+                    }
+                    latencies.get(operation).recordValue(Math.min(HIGHEST_LATENCY_MICROS, (System.nanoTime() - sent) / 1000));
+
+                    if (status.is2xxSuccessful()) {
+                        if (operation == Operation.DEPOSIT) {
+                            expected.addAndGet(index, amount);
+                        } else if (operation == Operation.WITHDRAW) {
+                            expected.addAndGet(index, -amount);
+                        }
+                    } else if (operation == Operation.WITHDRAW && status.is4xxClientError()) {
+                        rejected.incrementAndGet();
+                    } else {
+                        errors.get(operation).incrementAndGet();
+                        if (operation == Operation.DEPOSIT || operation == Operation.WITHDRAW) {
+                            uncertain.add(index);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        long total = 0;
+        System.out.printf("%-9s %9s %9s %9s %9s %9s %7s%n", "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "errors");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            total += histogram.getTotalCount();
+            System.out.printf("%-9s %9d %9.0f %9.2f %9.2f %9.2f %7d%n",
+                    operation, histogram.getTotalCount(), histogram.getTotalCount() / elapsedSeconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    errors.get(operation).get());
+        }
+
+        int lostUpdates = 0;
+        for (int i = 0; i < walletCount; i++) {
+            if (uncertain.contains(i)) {
+                continue;
+            }
+            Money actual = restTemplate.getForObject("/api/wallets/" + wallets[i], WalletResponseDTO.class).balance();
+            if (actual.minorUnits() != expected.get(i)) {
+                lostUpdates++;
+                System.out.printf("lost update on wallet %s: expected %s, actual %s%n",
+                        wallets[i], Money.ofMinor(expected.get(i)), actual);
+            }
+        }
+        System.out.printf("total %d ops, %.0f ops/s, %d withdrawals rejected, %d wallets unverified, %d lost updates%n",
+                total, total / elapsedSeconds, rejected.get(), uncertain.size(), lostUpdates);
+        assertEquals(0, lostUpdates);
+    }
+
+    private HttpStatusCode execute(Operation operation, UUID walletId, long amountMinor) {
+        ResponseEntity<String> response = switch (operation) {
+            case CREATE -> restTemplate.postForEntity("/api/wallets", new WalletRequestDTO("load-created"), String.class);
+            case READ -> restTemplate.getForEntity("/api/wallets/" + walletId, String.class);
+            case DEPOSIT, WITHDRAW -> restTemplate.exchange("/api/wallets/" + walletId, HttpMethod.PATCH,
+                    new HttpEntity<>(Map.of("operationType", operation.name(), "amount", Money.ofMinor(amountMinor))),
+                    String.class);
+        };
+        return response.getStatusCode();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Operation[] schedule(Map<Operation, Integer> mix) {
+        List<Operation> schedule = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                schedule.add(operation);
+            }
+        });
+        return schedule.toArray(new Operation[0]);
+    }
+
+    /**
+     * Индекс k выбирается с вероятностью ~ 1 / (k + 1)^s по предвычисленной функции распределения.
+     */
+    private static final class ZipfSampler {
+        private final double[] cdf;
+
+        private ZipfSampler(int size, double exponent) {
+            cdf = new double[size];
+            double sum = 0;
+            for (int k = 0; k < size; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < size; k++) {
+                cdf[k] /= sum;
+            }
+        }
+
+        private int next(double uniform) {
+            int index = Arrays.binarySearch(cdf, uniform);
+            return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletMetrics;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WalletMetricsTest {
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void changeBalance_shouldRecordOutcomesRejectionsAndLockWait() {
+        UUID walletId = walletService.createWallet(new WalletRequestDTO("MeteredUser")).id();
+        long successBefore = operationCount("DEPOSIT", WalletMetrics.SUCCESS);
+        long insufficientBefore = operationCount("WITHDRAW", WalletMetrics.INSUFFICIENT_FUNDS);
+        long notFoundBefore = operationCount("DEPOSIT", WalletMetrics.NOT_FOUND);
+
+        walletService.changeBalance(walletId, operation(OperationType.DEPOSIT, 5));
+        walletService.changeBalance(walletId, operation(OperationType.WITHDRAW, 10));
+        walletService.changeBalance(UUID.randomUUID(), operation(OperationType.DEPOSIT, 1));
+
+        assertEquals(successBefore + 1, operationCount("DEPOSIT", WalletMetrics.SUCCESS));
+        assertEquals(insufficientBefore + 1, operationCount("WITHDRAW", WalletMetrics.INSUFFICIENT_FUNDS));
+        assertEquals(notFoundBefore + 1, operationCount("DEPOSIT", WalletMetrics.NOT_FOUND));
+        assertTrue(meterRegistry.get("wallet.rejections").tag("reason", WalletMetrics.INSUFFICIENT_FUNDS).counter().count() >= 1);
+        assertTrue(meterRegistry.get("wallet.row_lock.wait").tag("path", "jpa").timer().count() >= 3);
+        assertTrue(meterRegistry.get("hikaricp.connections.active").gauge() != null);
+    }
+
+    @Test
+    void walletTags_shouldBeBoundedByMaxWallets() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        WalletMetrics metrics = new WalletMetrics(registry, true, 2);
+        for (int i = 0; i < 10; i++) {
+            metrics.recordOperation("READ", UUID.randomUUID(), OperationResult::notFound);
+        }
+        // два отдельных кошелька и общий other
+        assertEquals(3, registry.get("wallet.operation").timers().size());
+        assertEquals(8, registry.get("wallet.operation").tag("wallet", "other").timer().count());
+    }
+
+    private long operationCount(String operation, String outcome) {
+        var timer = meterRegistry.find("wallet.operation").tag("operation", operation).tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static WalletOperationRequestDTO operation(OperationType type, long amount) {
+        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+        dto.setOperationType(type);
+        dto.setAmount(Money.of(amount));
+        return dto;
+    }
+}
@@ -1,156 +1,154 @@
 package com.example.wallet;
 
+import com.example.wallet.DTO.TransferRequestDTO;
+import com.example.wallet.DTO.TransferResponseDTO;
 import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletPageDTO;
 import com.example.wallet.DTO.WalletRequestDTO;
 import com.example.wallet.DTO.WalletResponseDTO;
 import com.example.wallet.DTO.WalletUpdateRequestDTO;
+import com.example.wallet.config.WalletShards;
+import com.example.wallet.model.LedgerEntryType;
+import com.example.wallet.model.Money;
 import com.example.wallet.model.OperationType;
 import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletOperation;
+import com.example.wallet.repository.LedgerTail;
+import com.example.wallet.repository.WalletOperationRepository;
 import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.BalanceEngine;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletCache;
+import com.example.wallet.service.WalletHoldService;
+import com.example.wallet.service.WalletMetrics;
+import com.example.wallet.service.WalletOutbox;
 import com.example.wallet.service.WalletService;
+import com.example.wallet.service.WalletSubscriptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class WalletServiceTest {
     @Mock
     private WalletRepository walletRepository;
-    @InjectMocks
+    @Mock
+    private WalletOperationRepository walletOperationRepository;
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private BalanceEngine balanceEngine;
+    @Mock
+    private WalletOutbox walletOutbox;
+    @Mock
+    private WalletSubscriptions walletSubscriptions;
+    @Mock
+    private WalletHoldService walletHoldService;
     private WalletService walletService;
     private UUID walletId;
     @BeforeEach
     void setUp() {
         walletId = UUID.randomUUID();
+        WalletCache walletCache = new WalletCache(new SimpleMeterRegistry(), false, 0, 0);
+        walletService = new WalletService(walletRepository, walletOperationRepository, balanceEngine, walletCache,
+                new WalletMetrics(new SimpleMeterRegistry(), false, 0), walletOutbox, walletSubscriptions,
+                new WalletShards(1), walletHoldService, mock(PlatformTransactionManager.class), 1000, "7", 100);
     }
 
     @Test
     void createWallet_shouldReturnResponseDTO() {
         WalletRequestDTO dto = new WalletRequestDTO("TestUser");
-        Wallet savedWallet = new Wallet(walletId, BigDecimal.ZERO);
+        Wallet savedWallet = new Wallet(walletId, Money.ZERO);
         savedWallet.setOwner("TestUser");
         when(walletRepository.save(any(Wallet.class))).thenReturn(savedWallet);
         WalletResponseDTO response = walletService.createWallet(dto);
         assertEquals(walletId, response.id());
         assertEquals("TestUser", response.owner());
-        assertEquals(BigDecimal.ZERO, response.balance());
+        assertEquals(Money.ZERO, response.balance());
         verify(walletRepository, times(1)).save(any(Wallet.class));
     }
     @Test
     void getWalletById_shouldReturnWalletResponseDTO_whenWalletExists(){
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(50));
+        Wallet wallet = new Wallet(walletId, Money.of(50));
         wallet.setOwner ("ExistingUser");
         when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
-        WalletResponseDTO result = walletService.getWalletById(walletId);
+        WalletResponseDTO result = walletService.getWalletById(walletId).value();
 
         assertEquals(walletId, result.id());
         assertEquals("ExistingUser",result.owner());
-        assertEquals(BigDecimal.valueOf(50), result.balance());
+        assertEquals(Money.of(50), result.balance());
         verify(walletRepository, times(1)).findById(walletId);
     }
 
     @Test
-    void getWalletById_shouldThrowException_whenWalletNotFound() {
+    void getWalletById_shouldReturnNotFound_whenWalletNotFound() {
         when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.empty());
-        RuntimeException exception = assertThrows(
-                RuntimeException.class,
-                () -> walletService.getWalletById(walletId)
-        );
-
-        assertEquals("Wallet with id " + walletId + " not found", exception.getMessage());
+        assertEquals(OperationResult.Status.NOT_FOUND, walletService.getWalletById(walletId).status());
         verify(walletRepository, times(1)).findById(walletId);
     }
 
     @Test
     void updateBalance_shouldUpdateAndReturnWallet() {
-        Wallet existingWallet = new Wallet(walletId, BigDecimal.valueOf(20));
+        Wallet existingWallet = new Wallet(walletId, Money.of(20));
         existingWallet.setOwner("Deniz");
-        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(existingWallet));
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(java.util.Optional.of(existingWallet));
+        when(walletOperationRepository.tail(walletId, 0)).thenReturn(new LedgerTail(Money.ZERO, 0));
         when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        BigDecimal newBalance = BigDecimal.valueOf(100);
+        Money newBalance = Money.of(100);
         Wallet result = walletService.updateBalance(walletId, newBalance);
         assertEquals(newBalance, result.getBalance());
         assertEquals("Deniz", result.getOwner());
-        verify(walletRepository, times(1)).findById(walletId);
+        assertEquals(1, result.getSnapshotSeq());
+        verify(walletRepository, times(1)).findByIdForUpdate(walletId);
         verify(walletRepository, times(1)).save(existingWallet);
+        verify(walletOperationRepository).saveAndFlush(argThat(entry ->
+                entry.getOperationType() == LedgerEntryType.ADJUSTMENT && entry.getDelta().compareTo(Money.of(80)) == 0));
+        verify(walletOutbox).balanceChanged(eq(walletId), eq(newBalance), eq(1L), any());
     }
     @Test
     void updateBalance_shouldThrowException_whenWalletNotFound() {
-        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.empty());
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(java.util.Optional.empty());
 
         RuntimeException exception = assertThrows(
                 RuntimeException.class,
-                () -> walletService.updateBalance(walletId, BigDecimal.valueOf(100))
+                () -> walletService.updateBalance(walletId, Money.of(100))
         );
         assertEquals("Wallet with id " + walletId + " not found", exception.getMessage());
-        verify(walletRepository, times(1)).findById(walletId);
+        verify(walletRepository, times(1)).findByIdForUpdate(walletId);
+        verifyNoInteractions(walletOutbox);
     }
 
     @Test
-    void changeBalance_shouldDepositSuccessfully() {
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(50));
-        wallet.setOwner("TestUser");
+    void changeBalance_shouldDelegateToBalanceEngine() {
         WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
         dto.setOperationType(OperationType.DEPOSIT);
-        dto.setAmount(BigDecimal.valueOf(30));
-        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
-        when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        WalletResponseDTO response = walletService.changeBalance(walletId, dto);
-        assertEquals(BigDecimal.valueOf(80), response.balance());
-        assertEquals("TestUser", response.owner());
-        verify(walletRepository, times(1)).findById(walletId);
-        verify(walletRepository, times(1)).save(wallet);
-    }
-
-    @Test
-    void changeBalance_shouldWithdrawSuccessfully() {
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(100));
-        wallet.setOwner("TestUser");
-        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
-        dto.setOperationType(OperationType.WITHDRAW);
-        dto.setAmount(BigDecimal.valueOf(40));
-        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
-        when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        WalletResponseDTO response = walletService.changeBalance(walletId, dto);
-        assertEquals(BigDecimal.valueOf(60), response.balance());
-    }
-    @Test
-    void changeBalance_shouldThrowException_whenInsufficientFunds() {
-        UUID testId = UUID.fromString("11111111-1111-1111-1111-111111111111");
-
-        Wallet wallet = new Wallet(testId, BigDecimal.valueOf(20)); // ✅ правильный ID
-        wallet.setOwner("TestUser");
-
-        WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
-        dto.setOperationType(OperationType.WITHDRAW);
-        dto.setAmount(BigDecimal.valueOf(50));
-
-        when(walletRepository.findById(testId)).thenReturn(Optional.of(wallet)); // ✅ тот же ID
-
-        RuntimeException exception = assertThrows(
-                RuntimeException.class,
-                () -> walletService.changeBalance(testId, dto) // ✅ тот же ID
-        );
-
-        assertEquals("Insufficient funds", exception.getMessage());
-        verify(walletRepository, never()).save(any());
+        dto.setAmount(Money.of(30));
+        OperationResult<WalletResponseDTO> expected =
+                OperationResult.success(new WalletResponseDTO(walletId, "TestUser", Money.of(80)));
+        doReturn(expected).when(balanceEngine).changeBalance(walletId, dto);
+        assertEquals(expected, walletService.changeBalance(walletId, dto));
+        verify(balanceEngine).changeBalance(walletId, dto);
     }
 
     @Test
     void updateWallet_shouldUpdateOwner() {
-        Wallet existingWallet = new Wallet(walletId, BigDecimal.valueOf(100));
+        Wallet existingWallet = new Wallet(walletId, Money.of(100));
         existingWallet.setOwner("OldOwner");
         WalletUpdateRequestDTO updateDto = new WalletUpdateRequestDTO();
         updateDto.setOwner("NewOwner");
@@ -158,16 +156,15 @@ public class WalletServiceTest {
         when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
         WalletResponseDTO result = walletService.updateWallet(walletId, updateDto);
         assertEquals("NewOwner", result.owner());
-        assertEquals(BigDecimal.valueOf(100), result.balance());
+        assertEquals(Money.of(100), result.balance());
         assertEquals(walletId, result.id());
         verify(walletRepository, times(1)).findById(walletId);
         verify(walletRepository,times(1)).save(existingWallet);
     }
     @Test
-    void deleteWallet_shouldThrowException_whenWalletNotFound() {
+    void deleteWallet_shouldReturnNotFound_whenWalletNotFound() {
         when(walletRepository.existsById(walletId)).thenReturn(false);
-        RuntimeException exception = assertThrows(RuntimeException.class, ()->walletService.deleteWallet(walletId));
-        assertEquals("Wallet not found", exception.getMessage());
+        assertEquals(OperationResult.Status.NOT_FOUND, walletService.deleteWallet(walletId).status());
         verify(walletRepository, never()).deleteById(walletId);
 
     }
@@ -175,9 +172,66 @@ public class WalletServiceTest {
     @Test
     void deleteWallet_shouldDeleteSuccessfully() {
         when(walletRepository.existsById(walletId)).thenReturn(true);
-        walletService.deleteWallet(walletId);
+        assertTrue(walletService.deleteWallet(walletId).isSuccess());
         verify(walletRepository).existsById(walletId);
         verify(walletRepository).deleteById(walletId);
+        verify(walletOutbox).deleted(walletId);
+    }
+
+    @Test
+    void transfer_shouldMoveFundsAndWriteBothLedgerEntries() {
+        UUID targetId = UUID.randomUUID();
+        Wallet from = new Wallet(walletId, Money.of(100));
+        Wallet to = new Wallet(targetId, Money.of(5));
+        when(walletRepository.findAllByIdForUpdate(any())).thenReturn(List.of(to, from));
+        TransferResponseDTO result = walletService.transfer(new TransferRequestDTO(walletId, targetId, Money.of(30))).value();
+        assertEquals(Money.of(70), result.from().balance());
+        assertEquals(Money.of(35), result.to().balance());
+        verify(walletOperationRepository).saveAll(argThat(entries -> {
+            List<WalletOperation> list = (List<WalletOperation>) entries;
+            return list.size() == 2
+                    && list.get(0).getOperationType() == LedgerEntryType.TRANSFER_OUT
+                    && list.get(1).getOperationType() == LedgerEntryType.TRANSFER_IN;
+        }));
+    }
+
+    @Test
+    void transfer_shouldReject_whenInsufficientFunds() {
+        UUID targetId = UUID.randomUUID();
+        Wallet from = new Wallet(walletId, Money.of(10));
+        Wallet to = new Wallet(targetId, Money.ZERO);
+        when(walletRepository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        assertEquals(OperationResult.insufficientFunds(),
+                walletService.transfer(new TransferRequestDTO(walletId, targetId, Money.of(30))));
+        assertEquals(Money.of(10), from.getBalance());
+        verify(walletOperationRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void transfer_shouldRejectSameWallet() {
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.transfer(new TransferRequestDTO(walletId, walletId, Money.of(1))));
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void listWallets_shouldReturnNextAfter_whenPageIsFull() {
+        Wallet first = new Wallet(UUID.randomUUID(), Money.of(1));
+        Wallet second = new Wallet(UUID.randomUUID(), Money.of(2));
+        when(walletRepository.findPageByOwnerAfter(eq("Owner"), eq(walletId), any())).thenReturn(List.of(first, second));
+        WalletPageDTO page = walletService.listWallets("Owner", walletId, 2);
+        assertEquals(2, page.items().size());
+        assertEquals(second.getId(), page.nextAfter());
+
+        when(walletRepository.findPageAfter(any(), any())).thenReturn(List.of(first));
+        assertNull(walletService.listWallets(null, null, 2).nextAfter());
+    }
+
+    @Test
+    void listWallets_shouldRejectLimitOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> walletService.listWallets(null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> walletService.listWallets(null, null, 1001));
+        verifyNoInteractions(walletRepository);
     }
 
 }
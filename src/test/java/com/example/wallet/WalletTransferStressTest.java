@@ -0,0 +1,86 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.TransferRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Случайные переводы между небольшим набором кошельков: встречные A→B и B→A идут постоянно,
+ * взаимоблокировка проявилась бы таймаутом блокировки. Сумма денег должна сохраниться.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class WalletTransferStressTest {
+    private static final int WALLETS = 5;
+    private static final int TRANSFERS = 3000;
+    private static final int THREADS = 16;
+    private static final long INITIAL_BALANCE = 1000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Test
+    void transfer_randomOpposingTransfers_shouldConserveTotal() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            UUID id = walletService.createWallet(new WalletRequestDTO("TransferUser" + i)).id();
+            walletService.updateBalance(id, Money.of(INITIAL_BALANCE));
+            ids.add(id);
+        }
+
+        AtomicLong applied = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>(TRANSFERS);
+        long started = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(WALLETS);
+                int to = (from + 1 + random.nextInt(WALLETS - 1)) % WALLETS;
+                Money amount = Money.of(random.nextLong(1, 300));
+                if (walletService.transfer(new TransferRequestDTO(ids.get(from), ids.get(to), amount)).isSuccess()) {
+                    applied.incrementAndGet();
+                } else {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Money total = Money.ZERO;
+        for (UUID id : ids) {
+            Money balance = walletService.getWalletById(id).value().balance();
+            assertTrue(balance.signum() >= 0);
+            total = total.plus(balance);
+        }
+        assertEquals(0, total.compareTo(Money.of(INITIAL_BALANCE * WALLETS)));
+        assertEquals(TRANSFERS, applied.get() + rejected.get());
+
+        System.out.printf("transfers: %d applied, %d rejected, %.0f transfers/s%n",
+                applied.get(), rejected.get(), TRANSFERS / (elapsedNanos / 1e9));
+    }
+}
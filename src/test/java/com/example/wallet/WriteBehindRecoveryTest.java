@@ -0,0 +1,322 @@
+package com.example.wallet;
+
+import com.example.wallet.DTO.WalletOperationRequestDTO;
+import com.example.wallet.DTO.WalletRequestDTO;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.OperationType;
+import com.example.wallet.service.BalanceEngine;
+import com.example.wallet.service.OperationJournal;
+import com.example.wallet.service.OperationResult;
+import com.example.wallet.service.WalletService;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Восстановление режима write-behind. Процесс с сервисом запускается отдельной JVM и убивается
+ * посреди сброса пачки в БД (H2-триггер на UPDATE wallets останавливает транзакцию);
+ * после перезапуска на тех же БД и журнале балансы должны совпасть с подтверждёнными.
+ */
+public class WriteBehindRecoveryTest {
+    private static final int WALLETS = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void killDuringFlush_shouldReplayAcknowledgedOperations() throws Exception {
+        Process node = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Node.class.getName(), dir.toString())
+                .redirectErrorStream(true)
+                .start();
+        Map<UUID, Long> acknowledged = new HashMap<>();
+        StringBuilder output = new StringBuilder();
+        boolean killed = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(node.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+                if (line.startsWith("BALANCE ")) {
+                    String[] parts = line.split(" ");
+                    acknowledged.put(UUID.fromString(parts[1]), Long.parseLong(parts[2]));
+                } else if (line.equals("IN_FLUSH")) {
+                    node.destroyForcibly();
+                    killed = true;
+                    break;
+                }
+            }
+        } finally {
+            node.destroyForcibly();
+            node.waitFor(30, TimeUnit.SECONDS);
+        }
+        assertTrue(killed, output::toString);
+        assertEquals(WALLETS, acknowledged.size());
+        try (Connection connection = DriverManager.getConnection(url(dir), "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop trigger stall_flush");
+        }
+
+        try (ConfigurableApplicationContext context = start(dir)) {
+            WalletService walletService = context.getBean(WalletService.class);
+            for (Map.Entry<UUID, Long> wallet : acknowledged.entrySet()) {
+                assertEquals(Money.ofMinor(wallet.getValue()), walletService.getWalletById(wallet.getKey()).value().balance());
+            }
+            // восстановление пишет в БД до старта: строки и журнал операций уже согласованы
+            try (Connection connection = DriverManager.getConnection(url(dir), "sa", "");
+                 PreparedStatement statement = connection.prepareStatement(
+                         "select w.balance, w.snapshot_seq, count(o.id), coalesce(sum(o.delta), 0), coalesce(max(o.seq), 0)"
+                                 + " from wallets w left join wallet_operations o on o.wallet_id = w.id"
+                                 + " where w.id = ? group by w.balance, w.snapshot_seq")) {
+                for (Map.Entry<UUID, Long> wallet : acknowledged.entrySet()) {
+                    statement.setObject(1, wallet.getKey());
+                    try (ResultSet rs = statement.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals(wallet.getValue(), rs.getLong(1));
+                        assertEquals(rs.getLong(2), rs.getLong(3));
+                        assertEquals(wallet.getValue(), rs.getLong(4));
+                        assertEquals(rs.getLong(2), rs.getLong(5));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void updateBalanceAndDelete_shouldRunInTransactionOnShardThread() {
+        try (ConfigurableApplicationContext context = start(dir)) {
+            WalletService walletService = context.getBean(WalletService.class);
+            UUID walletId = walletService.createWallet(new WalletRequestDTO("adjusted")).id();
+            WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+            deposit.setOperationType(OperationType.DEPOSIT);
+            deposit.setAmount(Money.of(30));
+            walletService.changeBalance(walletId, deposit);
+
+            // журнал сбрасывается перед изменением в обход движка, следующая операция читает новую строку
+            assertEquals(Money.of(100), walletService.updateBalance(walletId, Money.of(100)).getBalance());
+            assertEquals(Money.of(130), walletService.changeBalance(walletId, deposit).value().balance());
+            assertTrue(walletService.deleteWallet(walletId).isSuccess());
+            assertEquals(OperationResult.Status.NOT_FOUND, walletService.getWalletById(walletId).status());
+        }
+    }
+
+    @Test
+    void failedFlush_shouldAcknowledgeJournaledOperations() throws Exception {
+        try (ConfigurableApplicationContext context = start(dir, 100)) {
+            WalletService walletService = context.getBean(WalletService.class);
+            BalanceEngine engine = context.getBean(BalanceEngine.class);
+            UUID walletId = walletService.createWallet(new WalletRequestDTO("unflushed")).id();
+            WalletOperationRequestDTO deposit = new WalletOperationRequestDTO();
+            deposit.setOperationType(OperationType.DEPOSIT);
+            deposit.setAmount(Money.of(1));
+            try (Connection connection = DriverManager.getConnection(url(dir), "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("create trigger fail_flush before update on wallets for each row call '"
+                        + FailTrigger.class.getName() + "'");
+                // сброс по batch-size падает, а операции уже в журнале: клиент получает подтверждение
+                for (int i = 1; i <= 150; i++) {
+                    assertEquals(Money.of(i), walletService.changeBalance(walletId, deposit).value().balance());
+                }
+                statement.execute("drop trigger fail_flush");
+            }
+
+            engine.exclusive(walletId, () -> null);
+            try (Connection connection = DriverManager.getConnection(url(dir), "sa", "");
+                 PreparedStatement statement = connection.prepareStatement(
+                         "select w.balance, (select count(*) from wallet_operations o where o.wallet_id = w.id)"
+                                 + " from wallets w where w.id = ?")) {
+                statement.setObject(1, walletId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(Money.of(150).minorUnits(), rs.getLong(1));
+                    assertEquals(150, rs.getLong(2));
+                }
+            }
+        }
+    }
+
+    @Test
+    void tornTail_shouldBeDiscardedAndJournalContinued() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        UUID wallet = UUID.randomUUID();
+        AtomicLong oldest = new AtomicLong(Long.MAX_VALUE);
+        try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+            for (int seq = 1; seq <= 3; seq++) {
+                journal.append(wallet, seq, OperationType.DEPOSIT, 100, seq * 100L, oldest);
+            }
+        }
+        // портим сумму в последней записи: CRC не сойдётся
+        Path segment;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 2L * 65 + 8 + 33);
+        }
+
+        try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+            assertEquals(List.of(1L, 2L), journal.recovered().stream().map(OperationJournal.Entry::seq).toList());
+            assertEquals(3, journal.append(wallet, 3, OperationType.DEPOSIT, 50, 250, oldest));
+        }
+        // новый сегмент продолжает lsn после испорченного хвоста старого
+        try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+            assertEquals(List.of(100L, 200L, 250L),
+                    journal.recovered().stream().map(OperationJournal.Entry::balanceAfter).toList());
+        }
+    }
+
+    @Test
+    void restarts_shouldRecoverUnflushedSegmentsAfterReleasedOnes() {
+        Path journalDir = dir.resolve("journal");
+        UUID wallet = UUID.randomUUID();
+        AtomicLong oldest = new AtomicLong(Long.MAX_VALUE);
+        // 4096 байт — 63 записи: каждый запуск пишет больше сегмента
+        try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+            appendSeq(journal, wallet, 1, 100, oldest);
+        }
+        for (long from = 101; from <= 301; from += 100) {
+            try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+                List<OperationJournal.Entry> recovered = journal.recovered();
+                assertEquals(100, recovered.size());
+                assertEquals(from - 100, recovered.get(0).lsn());
+                assertEquals(from - 1, recovered.get(recovered.size() - 1).seq());
+                // как WriteBehindBalanceEngine.recover: восстановленное сброшено, сегменты освобождаются
+                journal.releaseFlushed(() -> Long.MAX_VALUE);
+                appendSeq(journal, wallet, from, from + 99, oldest);
+            }
+        }
+        try (OperationJournal journal = new OperationJournal(journalDir, 4096, OperationJournal.FsyncPolicy.EVERY_OP, 0)) {
+            assertEquals(List.of(OperationType.DEPOSIT, OperationType.WITHDRAW),
+                    journal.recovered().stream().map(OperationJournal.Entry::type).distinct().toList());
+            assertEquals(301, journal.recovered().get(0).lsn());
+            assertEquals(400, journal.recovered().get(99).lsn());
+        }
+    }
+
+    private static void appendSeq(OperationJournal journal, UUID wallet, long from, long to, AtomicLong oldest) {
+        for (long seq = from; seq <= to; seq++) {
+            OperationType type = seq % 2 == 0 ? OperationType.WITHDRAW : OperationType.DEPOSIT;
+            journal.append(wallet, seq, type, 1, seq, oldest);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Path dir) {
+        return start(dir, 1_000_000);
+    }
+
+    private static ConfigurableApplicationContext start(Path dir, int batchSize) {
+        return new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--spring.datasource.url=" + url(dir),
+                        "--wallet.engine.mode=write-behind",
+                        "--wallet.engine.write-behind.journal-dir=" + dir.resolve("journal"),
+                        "--wallet.engine.write-behind.segment-size-mb=1",
+                        "--wallet.engine.write-behind.shards=2",
+                        "--wallet.engine.write-behind.batch-size=" + batchSize,
+                        "--wallet.engine.write-behind.flush-interval-ms=3600000",
+                        "--wallet.outbox.relay.enabled=false",
+                        "--wallet.cache.enabled=false",
+                        "--logging.level.com.example.wallet=INFO");
+    }
+
+    private static String url(Path dir) {
+        // WRITE_DELAY=0: зафиксированное в H2 не должно теряться при kill, иначе проверяется не журнал
+        return "jdbc:h2:file:" + dir.resolve("db").toAbsolutePath() + ";WRITE_DELAY=0;FILE_LOCK=NO;LOCK_TIMEOUT=10000";
+    }
+
+    /**
+     * Процесс, который убивает тест: часть операций сбрасывает в БД, остальные только подтверждает,
+     * печатает подтверждённые балансы и зависает в следующем сбросе.
+     */
+    public static final class Node {
+        public static void main(String[] args) throws Exception {
+            ConfigurableApplicationContext context = start(Path.of(args[0]));
+            WalletService walletService = context.getBean(WalletService.class);
+            BalanceEngine engine = context.getBean(BalanceEngine.class);
+            List<UUID> wallets = new ArrayList<>();
+            for (int i = 0; i < WALLETS; i++) {
+                wallets.add(walletService.createWallet(new WalletRequestDTO("journal")).id());
+            }
+            Random random = new Random(42);
+            Map<UUID, Money> balances = new HashMap<>();
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 500; i++) {
+                    UUID wallet = wallets.get(random.nextInt(WALLETS));
+                    boolean deposit = random.nextInt(3) > 0;
+                    WalletOperationRequestDTO dto = new WalletOperationRequestDTO();
+                    dto.setOperationType(deposit ? OperationType.DEPOSIT : OperationType.WITHDRAW);
+                    dto.setAmount(Money.of(1 + random.nextInt(20)));
+                    var result = walletService.changeBalance(wallet, dto);
+                    if (result.isSuccess()) {
+                        balances.put(wallet, result.value().balance());
+                    }
+                }
+                if (round == 0) {
+                    // первая половина уходит в БД: при восстановлении её записи журнала пропускаются по seq
+                    wallets.forEach(wallet -> engine.exclusive(wallet, () -> null));
+                }
+            }
+            for (UUID wallet : wallets) {
+                System.out.println("BALANCE " + wallet + " " + balances.getOrDefault(wallet, Money.ZERO).minorUnits());
+            }
+            try (Connection connection = context.getBean(DataSource.class).getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("create trigger stall_flush before update on wallets for each row call '"
+                        + StallTrigger.class.getName() + "'");
+            }
+            engine.exclusive(wallets.get(0), () -> null);
+            System.out.println("FLUSH_FINISHED");
+        }
+    }
+
+    public static final class StallTrigger implements Trigger {
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+            System.out.println("IN_FLUSH");
+            System.out.flush();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static final class FailTrigger implements Trigger {
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+            throw new SQLException("Database is unavailable");
+        }
+    }
+}